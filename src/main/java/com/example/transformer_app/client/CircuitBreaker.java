@@ -0,0 +1,135 @@
+package com.example.transformer_app.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Count-based circuit breaker.
+ * CLOSED: calls pass; once at least minCalls of the last windowSize calls are recorded and the failure rate reaches
+ * failureRateThreshold, it opens. OPEN: calls are refused for openMillis. HALF_OPEN: a single probe call is let
+ * through; its success closes the breaker, its failure opens it again.
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+
+    // Ring buffer of the latest outcomes (true = failure)
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long timesOpened;
+
+    public CircuitBreaker(int windowSize, int minCalls, double failureRateThreshold, long openMillis) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minCalls = Math.max(1, Math.min(minCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.outcomes = new boolean[this.windowSize];
+    }
+
+    /**
+     * @return whether a call may be made now; every true must be followed by onSuccess, onFailure or onIgnored
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            probeInFlight = false;
+            clearWindow();
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minCalls && (double) failures / recorded >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    // The acquired call was not made (e.g. rejected locally) and says nothing about the detector
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("recordedCalls", recorded);
+        stats.put("failedCalls", failures);
+        stats.put("timesOpened", timesOpened);
+        return stats;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == windowSize) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % windowSize;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        probeInFlight = false;
+        timesOpened++;
+        clearWindow();
+        LOG.warn("Detector circuit breaker opened for {} ms", openMillis);
+    }
+
+    private void clearWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.transformer_app.client;
+
+import com.example.transformer_app.dto.ImageAnalysisResult;
+
+import java.io.IOException;
+
+/**
+ * Sends one image to the object detector and returns its answer.
+ * The implementation is chosen with inference.client: json (Base64 JSON Lambda, the default),
+ * binary (raw image bytes), onnx (in-process CPU model) or mock (local fake detector for load tests).
+ */
+public interface InferenceClient {
+
+    // Qualifier of the transport beans; the unqualified InferenceClient is the resilient wrapper around the active one
+    String BACKEND = "inferenceBackend";
+
+    /**
+     * @return the detections with boxes as [x1, y1, x2, y2], plus the image URL if the detector stored the image ("" otherwise)
+     * @throws IOException if the detector could not be reached or did not answer successfully
+     */
+    ImageAnalysisResult detect(byte[] image, double threshold, double iouThreshold) throws IOException;
+}
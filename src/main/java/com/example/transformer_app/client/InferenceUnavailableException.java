@@ -0,0 +1,14 @@
+package com.example.transformer_app.client;
+
+import java.io.IOException;
+
+/**
+ * The detector was not called because its circuit breaker is open or too many calls are in flight.
+ * The image should be analysed again later rather than treated as having no anomalies.
+ */
+public class InferenceUnavailableException extends IOException {
+
+    public InferenceUnavailableException(String message) {
+        super(message);
+    }
+}
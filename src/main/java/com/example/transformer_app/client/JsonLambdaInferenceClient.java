@@ -0,0 +1,42 @@
+package com.example.transformer_app.client;
+
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.dto.ImageAnalysisResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * The detection Lambda with its original contract: a JSON body with the image as Base64
+ * (streamed, see LambdaPayload) and the thresholds as fields.
+ */
+@Component
+@Qualifier(InferenceClient.BACKEND)
+@ConditionalOnProperty(name = "inference.client", havingValue = "json", matchIfMissing = true)
+public class JsonLambdaInferenceClient implements InferenceClient {
+
+    private final SupabaseClient supabaseClient;
+    private final String lambdaUrl;
+
+    @Autowired
+    public JsonLambdaInferenceClient(
+            SupabaseClient supabaseClient,
+            @Value("${lambda.url:https://zbpuxumseg.execute-api.ap-southeast-1.amazonaws.com/prod/}") String lambdaUrl
+    ) {
+        this.supabaseClient = supabaseClient;
+        this.lambdaUrl = lambdaUrl;
+    }
+
+    @Override
+    public ImageAnalysisResult detect(byte[] image, double threshold, double iouThreshold) throws IOException {
+        long contentLength = LambdaPayload.contentLength(Json.MAPPER.getFactory(), image.length, threshold, iouThreshold);
+        ResponseEntity<String> response = supabaseClient.postJson(lambdaUrl, contentLength,
+                generator -> LambdaPayload.write(generator, image, threshold, iouThreshold));
+        return LambdaResponse.parse(response);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.transformer_app.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset (cursor) pagination over a PostgREST table.
+ * A cursor is an opaque Base64url token holding the sort key(s) of the last row of the previous page.
+ */
+public class Keyset {
+
+    public static final Keyset TRANSFORMERS = ascending("id");
+    public static final Keyset INSPECTIONS = ascending("iid");
+    public static final Keyset MAINTENANCE = newestFirst("created_at", "mid");
+    public static final Keyset ANOMALY_LOG = ascending("lid");
+
+    private final String column;
+    private final String tieBreaker; // only used for the newest-first ordering
+    private final boolean descending;
+
+    private Keyset(String column, String tieBreaker, boolean descending) {
+        this.column = column;
+        this.tieBreaker = tieBreaker;
+        this.descending = descending;
+    }
+
+    /**
+     * Ascending order on a unique numeric key, e.g. id.
+     */
+    public static Keyset ascending(String column) {
+        return new Keyset(column, null, false);
+    }
+
+    /**
+     * Descending order on a timestamp column, with a unique key to break ties between equal timestamps.
+     */
+    public static Keyset newestFirst(String timestampColumn, String tieBreaker) {
+        return new Keyset(timestampColumn, tieBreaker, true);
+    }
+
+    /**
+     * PostgREST query fragment (without leading '&') selecting the page after the given cursor.
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public String query(String after, int limit) {
+        StringBuilder query = new StringBuilder();
+        if (after != null && !after.isEmpty()) {
+            String[] key = decode(after);
+            if (!descending) {
+                query.append(column).append("=gt.").append(key[0]).append('&');
+            } else {
+                if (key.length != 2) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                query.append("or=(")
+                        .append(column).append(".lt.\"").append(key[0]).append("\",")
+                        .append("and(").append(column).append(".eq.\"").append(key[0]).append("\",")
+                        .append(tieBreaker).append(".lt.").append(key[1]).append("))&");
+            }
+        }
+        if (!descending) {
+            query.append("order=").append(column).append(".asc");
+        } else {
+            query.append("order=").append(column).append(".desc,").append(tieBreaker).append(".desc");
+        }
+        query.append("&limit=").append(limit);
+        return query.toString();
+    }
+
+    /**
+     * Cursor pointing just past the given row, or null if the row doesn't carry the sort key(s).
+     */
+    public String cursorFor(JsonNode row) {
+        JsonNode key = row.get(column);
+        if (key == null || key.isNull()) {
+            return null;
+        }
+        if (!descending) {
+            return encode(key.asText());
+        }
+        JsonNode tie = row.get(tieBreaker);
+        String timestamp = normalizeTimestamp(key.asText());
+        if (tie == null || tie.isNull() || timestamp == null) {
+            return null;
+        }
+        return encode(timestamp + "|" + tie.asText());
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decode(String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        String[] parts = raw.split("\\|", -1);
+        // Only allow values we produced ourselves, so nothing can be smuggled into the PostgREST query
+        for (int i = 0; i < parts.length; i++) {
+            boolean isTimestamp = descending && i == 0;
+            if (!(isTimestamp ? parts[i].matches("[0-9T:.\\-]+Z") : parts[i].matches("-?[0-9]+"))) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        return parts;
+    }
+
+    // Store timestamps in UTC ("Z") form so the cursor never contains a '+' that would be read as a space in the URL
+    private static String normalizeTimestamp(String value) {
+        try {
+            return OffsetDateTime.parse(value).withOffsetSameInstant(ZoneOffset.UTC).toString();
+        } catch (DateTimeParseException e) {
+            // timestamp without time zone: Postgres ignores the zone designator when casting
+            try {
+                return LocalDateTime.parse(value).toString() + "Z";
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.transformer_app.client;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Request body of the detection Lambda: {"image": base64, "threshold": ..., "iou_threshold": ...}.
+ * The image is Base64-encoded by the generator in small chunks straight into the output stream, so no
+ * Base64 String, payload map or serialized copy of the body is ever held on the heap.
+ */
+final class LambdaPayload {
+
+    private LambdaPayload() {
+    }
+
+    static void write(JsonGenerator generator, byte[] image, double threshold, double iouThreshold) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("image");
+        // MIME_NO_LINEFEEDS is standard Base64 with padding, the same as java.util.Base64.getEncoder()
+        generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, new ByteArrayInputStream(image), image.length);
+        generator.writeNumberField("threshold", threshold);
+        generator.writeNumberField("iou_threshold", iouThreshold);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Exact size of the body write() produces, so it can be sent with a Content-Length instead of chunked.
+     */
+    static long contentLength(JsonFactory factory, int imageLength, double threshold, double iouThreshold) throws IOException {
+        ByteArrayOutputStream skeleton = new ByteArrayOutputStream(64);
+        try (JsonGenerator generator = factory.createGenerator(skeleton)) {
+            write(generator, new byte[0], threshold, iouThreshold);
+        }
+        return skeleton.size() + 4L * ((imageLength + 2) / 3);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.transformer_app.client;
+
+import com.example.transformer_app.config.Diagnostics;
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.dto.Detection;
+import com.example.transformer_app.dto.ImageAnalysisResult;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Response of the detection Lambda, the same for every transport: {"imageUrl": ..., "detections": [...]}.
+ */
+public final class LambdaResponse {
+
+    private static final Diagnostics DIAGNOSTICS = Diagnostics.forCategory("inference");
+    private static final ObjectReader DETECTIONS = Json.reader(new TypeReference<List<Detection>>() {});
+
+    private LambdaResponse() {
+    }
+
+    static ImageAnalysisResult parse(ResponseEntity<String> response) throws IOException {
+        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+            throw new IOException("Lambda returned " + response.getStatusCode() + " without a body");
+        }
+        DIAGNOSTICS.debug("detector response: {}", Diagnostics.payload(response.getBody()));
+        return parse(response.getBody());
+    }
+
+    // Streams the detections straight into Detection objects instead of going through a JsonNode tree
+    public static ImageAnalysisResult parse(String body) throws IOException {
+        String imageUrl = "";
+        List<Detection> detections = Collections.emptyList();
+        try (JsonParser parser = Json.MAPPER.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Lambda response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("imageUrl") && value == JsonToken.VALUE_STRING) {
+                    imageUrl = parser.getText();
+                } else if (field.equals("detections") && value != JsonToken.VALUE_NULL) {
+                    detections = DETECTIONS.readValue(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new ImageAnalysisResult(imageUrl, detections);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.transformer_app.client;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Fits an image into the detector's square input the way YOLO-style models expect it: scaled to keep its aspect
+ * ratio, centred and padded with grey. Maps coordinates in the square input back to the source image.
+ */
+public final class Letterbox {
+
+    private static final Color PADDING = new Color(114, 114, 114);
+
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int inputSize;
+    private final double scale;
+    private final int scaledWidth;
+    private final int scaledHeight;
+    private final int padX;
+    private final int padY;
+
+    public Letterbox(int sourceWidth, int sourceHeight, int inputSize) {
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.inputSize = inputSize;
+        this.scale = Math.min((double) inputSize / sourceWidth, (double) inputSize / sourceHeight);
+        this.scaledWidth = (int) Math.round(sourceWidth * scale);
+        this.scaledHeight = (int) Math.round(sourceHeight * scale);
+        this.padX = (inputSize - scaledWidth) / 2;
+        this.padY = (inputSize - scaledHeight) / 2;
+    }
+
+    // The source drawn into an inputSize x inputSize RGB image
+    public BufferedImage draw(BufferedImage source) {
+        BufferedImage canvas = new BufferedImage(inputSize, inputSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = canvas.createGraphics();
+        graphics.setColor(PADDING);
+        graphics.fillRect(0, 0, inputSize, inputSize);
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(source, padX, padY, scaledWidth, scaledHeight, null);
+        graphics.dispose();
+        return canvas;
+    }
+
+    public double toSourceX(double x) {
+        return Math.max(0, Math.min(sourceWidth, (x - padX) / scale));
+    }
+
+    public double toSourceY(double y) {
+        return Math.max(0, Math.min(sourceHeight, (y - padY) / scale));
+    }
+
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+}
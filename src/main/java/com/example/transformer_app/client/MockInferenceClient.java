@@ -0,0 +1,61 @@
+package com.example.transformer_app.client;
+
+import com.example.transformer_app.dto.Detection;
+import com.example.transformer_app.dto.ImageAnalysisResult;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Local stand-in for the detector, for load tests that must not hit the Lambda.
+ * Answers after inference.mock.latency-ms with up to three boxes derived from the image bytes,
+ * so the same image always gets the same detections.
+ */
+@Component
+@Qualifier(InferenceClient.BACKEND)
+@ConditionalOnProperty(name = "inference.client", havingValue = "mock")
+public class MockInferenceClient implements InferenceClient {
+
+    private final long latencyMs;
+
+    public MockInferenceClient(@Value("${inference.mock.latency-ms:0}") long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    @Override
+    public ImageAnalysisResult detect(byte[] image, double threshold, double iouThreshold) throws IOException {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted in mock inference");
+            }
+        }
+
+        Random random = new Random(Arrays.hashCode(image));
+        List<Detection> detections = new ArrayList<>();
+        int count = random.nextInt(4);
+        for (int i = 0; i < count; i++) {
+            double confidence = 0.5 + random.nextDouble() / 2;
+            if (confidence < threshold) {
+                continue;
+            }
+            double x1 = random.nextInt(500);
+            double y1 = random.nextInt(500);
+            Detection detection = new Detection();
+            detection.setBox(x1, y1, x1 + 20 + random.nextInt(100), y1 + 20 + random.nextInt(100));
+            detection.setClassName("mock");
+            detection.setConfidence(confidence);
+            detections.add(detection);
+        }
+        return new ImageAnalysisResult("", detections);
+    }
+}
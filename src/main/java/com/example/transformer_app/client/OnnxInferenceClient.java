@@ -0,0 +1,230 @@
+package com.example.transformer_app.client;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.example.transformer_app.dto.Detection;
+import com.example.transformer_app.dto.ImageAnalysisResult;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process detector: runs the exported YOLO-style ONNX model on the CPU with ONNX Runtime, which removes the
+ * network hop, cold starts and per-call billing of the Lambda.
+ * The model is loaded once at startup; inference runs on a dedicated fixed-size pool (inference.onnx.workers),
+ * each run using inference.onnx.intra-op-threads cores.
+ *
+ * Expects one image input of shape [1, 3, size, size] (RGB, 0..1) and one output of shape [1, 4 + classes, boxes]
+ * (or transposed) holding center x/y, width and height in input pixels followed by per-class scores, as exported
+ * by Ultralytics. Boxes are returned as [x1, y1, x2, y2] in original image pixels after per-class NMS, like the Lambda.
+ */
+@Component
+@Qualifier(InferenceClient.BACKEND)
+@ConditionalOnProperty(name = "inference.client", havingValue = "onnx")
+public class OnnxInferenceClient implements InferenceClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OnnxInferenceClient.class);
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final String inputName;
+    private final int inputSize;
+    private final List<String> classNames;
+    private final ExecutorService workers;
+
+    public OnnxInferenceClient(
+            @Value("${inference.onnx.model-path}") String modelPath,
+            @Value("${inference.onnx.input-size:640}") int inputSize,
+            @Value("${inference.onnx.class-names:}") List<String> classNames,
+            @Value("${inference.onnx.workers:2}") int workers,
+            @Value("${inference.onnx.intra-op-threads:2}") int intraOpThreads
+    ) throws OrtException {
+        this.environment = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            options.setIntraOpNumThreads(intraOpThreads);
+            this.session = environment.createSession(modelPath, options);
+        }
+        this.inputName = session.getInputNames().iterator().next();
+        this.inputSize = inputSize;
+        this.classNames = classNames;
+        this.workers = ExecutorServiceMetrics.monitor(Metrics.globalRegistry,
+                Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("onnx-inference-")), "onnxInference");
+        LOG.info("Loaded ONNX detector {} (input {}, {}px)", modelPath, inputName, inputSize);
+    }
+
+    @Override
+    public ImageAnalysisResult detect(byte[] image, double threshold, double iouThreshold) throws IOException {
+        Future<List<Detection>> run = workers.submit(() -> run(image, threshold, iouThreshold));
+        try {
+            return new ImageAnalysisResult("", run.get());
+        } catch (InterruptedException e) {
+            // The caller's deadline passed
+            run.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for ONNX inference");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("ONNX inference failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private List<Detection> run(byte[] image, double threshold, double iouThreshold) throws IOException, OrtException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(image));
+        if (source == null) {
+            throw new IOException("Unsupported image format");
+        }
+        Letterbox letterbox = new Letterbox(source.getWidth(), source.getHeight(), inputSize);
+
+        try (OnnxTensor input = OnnxTensor.createTensor(environment, FloatBuffer.wrap(toTensor(source, letterbox)),
+                new long[]{1, 3, inputSize, inputSize});
+             OrtSession.Result result = session.run(Map.of(inputName, input))) {
+            float[][] output = ((float[][][]) result.get(0).getValue())[0];
+            return nonMaxSuppression(decode(output, letterbox, threshold), iouThreshold);
+        }
+    }
+
+    // Letterboxed (aspect-preserving, grey padded) RGB image as a CHW float array scaled to 0..1
+    private float[] toTensor(BufferedImage source, Letterbox letterbox) {
+        BufferedImage canvas = letterbox.draw(source);
+
+        int area = inputSize * inputSize;
+        int[] pixels = canvas.getRGB(0, 0, inputSize, inputSize, null, 0, inputSize);
+        float[] tensor = new float[3 * area];
+        for (int i = 0; i < area; i++) {
+            int pixel = pixels[i];
+            tensor[i] = ((pixel >> 16) & 0xff) / 255f;
+            tensor[area + i] = ((pixel >> 8) & 0xff) / 255f;
+            tensor[2 * area + i] = (pixel & 0xff) / 255f;
+        }
+        return tensor;
+    }
+
+    // Best class per candidate box, above the confidence threshold, mapped back to original image pixels
+    private List<Candidate> decode(float[][] output, Letterbox letterbox, double threshold) {
+        boolean channelsFirst = output.length < output[0].length;
+        int boxes = channelsFirst ? output[0].length : output.length;
+        int channels = channelsFirst ? output.length : output[0].length;
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (int b = 0; b < boxes; b++) {
+            int bestClass = -1;
+            float bestScore = 0f;
+            for (int c = 4; c < channels; c++) {
+                float score = channelsFirst ? output[c][b] : output[b][c];
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestClass = c - 4;
+                }
+            }
+            if (bestClass < 0 || bestScore < threshold) {
+                continue;
+            }
+
+            float cx = channelsFirst ? output[0][b] : output[b][0];
+            float cy = channelsFirst ? output[1][b] : output[b][1];
+            float w = channelsFirst ? output[2][b] : output[b][2];
+            float h = channelsFirst ? output[3][b] : output[b][3];
+            candidates.add(new Candidate(bestClass, bestScore,
+                    letterbox.toSourceX(cx - w / 2), letterbox.toSourceY(cy - h / 2),
+                    letterbox.toSourceX(cx + w / 2), letterbox.toSourceY(cy + h / 2)));
+        }
+        return candidates;
+    }
+
+    // Greedy per-class NMS, highest score first
+    private List<Detection> nonMaxSuppression(List<Candidate> candidates, double iouThreshold) {
+        candidates.sort(Comparator.comparingDouble((Candidate candidate) -> candidate.score).reversed());
+        List<Candidate> kept = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            boolean suppressed = false;
+            for (Candidate other : kept) {
+                if (other.classIndex == candidate.classIndex && other.iou(candidate) > iouThreshold) {
+                    suppressed = true;
+                    break;
+                }
+            }
+            if (!suppressed) {
+                kept.add(candidate);
+            }
+        }
+
+        List<Detection> detections = new ArrayList<>(kept.size());
+        for (Candidate candidate : kept) {
+            Detection detection = new Detection();
+            detection.setBox(candidate.x1, candidate.y1, candidate.x2, candidate.y2);
+            detection.setClassName(candidate.classIndex < classNames.size()
+                    ? classNames.get(candidate.classIndex) : String.valueOf(candidate.classIndex));
+            detection.setConfidence(candidate.score);
+            detections.add(detection);
+        }
+        return detections;
+    }
+
+    @PreDestroy
+    public void close() throws OrtException {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        session.close();
+    }
+
+    private static final class Candidate {
+        final int classIndex;
+        final double score;
+        final double x1;
+        final double y1;
+        final double x2;
+        final double y2;
+
+        Candidate(int classIndex, double score, double x1, double y1, double x2, double y2) {
+            this.classIndex = classIndex;
+            this.score = score;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+        }
+
+        double iou(Candidate other) {
+            double width = Math.min(x2, other.x2) - Math.max(x1, other.x1);
+            double height = Math.min(y2, other.y2) - Math.max(y1, other.y1);
+            if (width <= 0 || height <= 0) {
+                return 0;
+            }
+            double intersection = width * height;
+            double union = (x2 - x1) * (y2 - y1) + (other.x2 - other.x1) * (other.y2 - other.y1) - intersection;
+            return union <= 0 ? 0 : intersection / union;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.transformer_app.client;
+
+import com.example.transformer_app.config.CancellableFuture;
+import com.example.transformer_app.dto.ImageAnalysisResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps the active detector transport with:
+ * - a deadline per call (inference.timeout-ms), enforced on a bounded executor so slow calls can't pile up
+ *   on request threads (when all inference.max-concurrent slots are busy, calls fail fast);
+ * - a circuit breaker with half-open probing; while it is open, calls fail with InferenceUnavailableException;
+ * - optional hedging: if the first attempt hasn't answered after the p95 of recent latencies, a second attempt
+ *   is sent and whichever succeeds first wins.
+ * Attempts run as CancellableFutures: the loser of a hedge and an attempt past the deadline are interrupted and
+ * their HTTP request aborted, so they give back their inference.max-concurrent slot right away.
+ */
+public class ResilientInferenceClient implements InferenceClient {
+
+    private static final int LATENCY_SAMPLES = 100;
+    private static final int MIN_SAMPLES_FOR_HEDGING = 20;
+
+    private final InferenceClient delegate;
+    private final Executor executor;
+    private final CircuitBreaker breaker;
+    private final long timeoutMs;
+    private final boolean hedgingEnabled;
+    private final long minHedgeDelayMs;
+
+    // Latencies of recent successful attempts, for the hedge delay
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyNext;
+    private int latencyCount;
+
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ResilientInferenceClient(InferenceClient delegate, Executor executor, CircuitBreaker breaker,
+                                    long timeoutMs, boolean hedgingEnabled, long minHedgeDelayMs) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.breaker = breaker;
+        this.timeoutMs = timeoutMs;
+        this.hedgingEnabled = hedgingEnabled;
+        this.minHedgeDelayMs = minHedgeDelayMs;
+    }
+
+    @Override
+    public ImageAnalysisResult detect(byte[] image, double threshold, double iouThreshold) throws IOException {
+        if (!breaker.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new InferenceUnavailableException("Detector circuit breaker is open");
+        }
+        // No hedging while probing a recovering detector
+        boolean hedge = hedgingEnabled && breaker.getState() == CircuitBreaker.State.CLOSED;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        List<CompletableFuture<ImageAnalysisResult>> attempts = new ArrayList<>();
+        try {
+            CompletableFuture<ImageAnalysisResult> primary = attempt(image, threshold, iouThreshold);
+            attempts.add(primary);
+            CompletableFuture<ImageAnalysisResult> answer = primary;
+
+            long hedgeDelayMs = hedge ? hedgeDelayMs() : -1;
+            if (hedgeDelayMs >= 0 && hedgeDelayMs < timeoutMs) {
+                try {
+                    ImageAnalysisResult result = primary.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+                    breaker.onSuccess();
+                    return result;
+                } catch (TimeoutException slow) {
+                    try {
+                        CompletableFuture<ImageAnalysisResult> second = attempt(image, threshold, iouThreshold);
+                        hedgesSent.incrementAndGet();
+                        attempts.add(second);
+                        second.thenRun(() -> {
+                            if (!primary.isDone() || primary.isCompletedExceptionally()) {
+                                hedgesWon.incrementAndGet();
+                            }
+                        });
+                        answer = firstSuccess(primary, second);
+                    } catch (RejectedExecutionException full) {
+                        // No free slot for the hedge: keep waiting for the first attempt
+                    }
+                }
+            }
+
+            ImageAnalysisResult result = answer.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            breaker.onSuccess();
+            return result;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            breaker.onIgnored();
+            throw new InferenceUnavailableException("Too many detector calls in flight");
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            breaker.onFailure();
+            throw new IOException("Detector did not answer within " + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            breaker.onIgnored();
+            throw new IOException("Interrupted while waiting for the detector");
+        } catch (ExecutionException e) {
+            breaker.onFailure();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Detector call failed: " + cause.getMessage(), cause);
+        } finally {
+            for (CompletableFuture<ImageAnalysisResult> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(breaker.stats());
+        stats.put("timeoutMs", timeoutMs);
+        stats.put("hedging", hedgingEnabled);
+        stats.put("hedgeDelayMs", hedgeDelayMs());
+        stats.put("hedgesSent", hedgesSent.get());
+        stats.put("hedgesWon", hedgesWon.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    // One call of the transport on the bounded executor; throws RejectedExecutionException when all slots are busy
+    private CompletableFuture<ImageAnalysisResult> attempt(byte[] image, double threshold, double iouThreshold) {
+        return CancellableFuture.submit(() -> {
+            long start = System.nanoTime();
+            ImageAnalysisResult result = delegate.detect(image, threshold, iouThreshold);
+            recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return result;
+        }, executor);
+    }
+
+    // Completes with the first successful attempt, or with the last failure if both fail
+    private static CompletableFuture<ImageAnalysisResult> firstSuccess(CompletableFuture<ImageAnalysisResult> first,
+                                                                       CompletableFuture<ImageAnalysisResult> second) {
+        CompletableFuture<ImageAnalysisResult> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        for (CompletableFuture<ImageAnalysisResult> attempt : Arrays.asList(first, second)) {
+            attempt.whenComplete((result, ex) -> {
+                if (ex == null) {
+                    winner.complete(result);
+                } else if (pending.decrementAndGet() == 0) {
+                    winner.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                }
+            });
+        }
+        return winner;
+    }
+
+    private synchronized void recordLatency(long millis) {
+        latencies[latencyNext] = millis;
+        latencyNext = (latencyNext + 1) % LATENCY_SAMPLES;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+    }
+
+    // p95 of recent latencies (at least inference.hedge.min-delay-ms), or -1 until there are enough samples
+    private synchronized long hedgeDelayMs() {
+        if (latencyCount < MIN_SAMPLES_FOR_HEDGING) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        long p95 = sorted[(int) Math.ceil(0.95 * latencyCount) - 1];
+        return Math.max(minHedgeDelayMs, p95);
+    }
+}
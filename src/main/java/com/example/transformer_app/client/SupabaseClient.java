@@ -0,0 +1,617 @@
+package com.example.transformer_app.client;
+
+import com.example.transformer_app.config.CancellableFuture;
+import com.example.transformer_app.config.Json;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Single gateway for every outbound HTTP call (Supabase REST, Supabase Storage and the detection Lambda).
+ * Owns one pooled Apache HttpClient so connections (and their TLS sessions) are reused across requests.
+ * Every call is timed as upstream.requests, tagged with dependency (supabase-rest, supabase-storage, inference),
+ * table (PostgREST table or storage folder), method and status.
+ */
+@Component
+public class SupabaseClient {
+
+    private static final String UPSTREAM_TIMER = "upstream.requests";
+
+    private final String supabaseUrl;
+    private final String supabaseApiKey;
+    private final String bucketName;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+
+
+    @Value("${supabase.stream.gzip:true}")
+    private boolean streamGzip;
+
+    @Value("${storage.content-addressed:false}")
+    private boolean contentAddressedStorage;
+
+    // Object keys known to exist in the bucket (bounded, least recently used dropped first)
+    private final Set<String> knownKeys;
+
+    @Value("${supabase.pagination.max-limit:1000}")
+    private int maxPageSize;
+
+    // exact | planned | estimated (see PostgREST "Prefer: count=")
+    @Value("${supabase.pagination.count:exact}")
+    private String pageCountMode;
+
+    @Value("${supabase.embedding.enabled:true}")
+    private boolean embeddingEnabled = true;
+
+    // Embeds PostgREST has no relationship for, as "table->embed"; these are not attempted again
+    private final Set<String> unsupportedEmbeds = ConcurrentHashMap.newKeySet();
+
+    public SupabaseClient(
+            @Value("${supabase.url}") String supabaseUrl,
+            @Value("${supabase.apikey}") String supabaseApiKey,
+            @Value("${supabase.bucket.name}") String bucketName,
+            @Value("${supabase.http.max-total:100}") int maxTotal,
+            @Value("${supabase.http.max-per-route:50}") int maxPerRoute,
+            @Value("${supabase.http.connect-timeout-ms:3000}") long connectTimeoutMs,
+            @Value("${supabase.http.response-timeout-ms:30000}") long responseTimeoutMs,
+            @Value("${supabase.http.connection-request-timeout-ms:2000}") long connectionRequestTimeoutMs,
+            @Value("${supabase.http.keep-alive-ms:30000}") long keepAliveMs,
+            @Value("${supabase.http.idle-evict-ms:30000}") long idleEvictMs,
+            @Value("${storage.known-keys.max:10000}") int maxKnownKeys
+    ) {
+        this.supabaseUrl = supabaseUrl;
+        this.supabaseApiKey = supabaseApiKey;
+        this.bucketName = bucketName;
+        this.knownKeys = Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxKnownKeys;
+            }
+        });
+
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                // Re-validate connections that sat idle for a while before handing them out again
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build();
+
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                // Used when the server does not send a Keep-Alive header
+                .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAliveMs))
+                .build();
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictMs))
+                .build();
+
+        // HttpComponents factory is also what gives us PATCH support
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient) {
+            // Cancelling the CancellableFuture a request runs in aborts the request (a blocked socket read ignores interrupts)
+            @Override
+            protected ClassicHttpRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+                ClassicHttpRequest request = super.createHttpUriRequest(httpMethod, uri);
+                if (request instanceof HttpUriRequestBase abortable) {
+                    CancellableFuture.onCancel(abortable::cancel);
+                }
+                return request;
+            }
+        });
+        // Request bodies (rows, log entries) are written with the shared mapper instead of a converter-private one
+        this.restTemplate.getMessageConverters().replaceAll(converter -> converter instanceof MappingJackson2HttpMessageConverter
+                ? new MappingJackson2HttpMessageConverter(Json.MAPPER) : converter);
+    }
+
+    // ---- Supabase REST (PostgREST) ----
+
+    /**
+     * Builds the absolute PostgREST URL for a table path with an optional query, e.g. "inspections?iid=eq.1".
+     */
+    public String restUrl(String tableAndQuery) {
+        return supabaseUrl + "/rest/v1/" + tableAndQuery;
+    }
+
+    public ResponseEntity<String> get(String tableAndQuery) {
+        return exchange(restUrl(tableAndQuery), HttpMethod.GET, new HttpEntity<>(headers()));
+    }
+
+    /**
+     * Reads rows together with a related table in one round trip (PostgREST resource embedding), e.g.
+     * getEmbedded("inspections", "transformers(baselineImage)", "iid=eq.1").
+     * @return null when embedding is disabled or PostgREST finds no relationship between the tables
+     *         (400, code PGRST200) or more than one (300, code PGRST201); the caller then reads the tables separately
+     */
+    public ResponseEntity<String> getEmbedded(String table, String embed, String filters) {
+        String key = table + "->" + embed;
+        if (!embeddingEnabled || unsupportedEmbeds.contains(key)) {
+            return null;
+        }
+        ResponseEntity<String> response;
+        try {
+            response = get(table + "?select=*," + embed + "&" + filters);
+        } catch (HttpClientErrorException.BadRequest e) {
+            if (!"PGRST200".equals(errorCode(e.getResponseBodyAsString()))) {
+                throw e;
+            }
+            unsupportedEmbeds.add(key);
+            return null;
+        }
+        // An ambiguous relationship comes back as 300 Multiple Choices, which RestTemplate doesn't treat as an error
+        if (response.getStatusCode().value() == HttpStatus.MULTIPLE_CHOICES.value()) {
+            if (!"PGRST201".equals(errorCode(response.getBody()))) {
+                throw new RestClientResponseException("Unexpected 300 response from PostgREST", response.getStatusCode(),
+                        "Multiple Choices", response.getHeaders(),
+                        response.getBody() != null ? response.getBody().getBytes(StandardCharsets.UTF_8) : null,
+                        StandardCharsets.UTF_8);
+            }
+            unsupportedEmbeds.add(key);
+            return null;
+        }
+        return response;
+    }
+
+    // The "code" field of a PostgREST error body, or null if the body is not one
+    private static String errorCode(String body) {
+        if (body == null || body.isEmpty()) {
+            return null;
+        }
+        try {
+            JsonNode code = Json.MAPPER.readTree(body).get("code");
+            return code != null && code.isTextual() ? code.asText() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public ResponseEntity<String> post(String tableAndQuery, Object body) {
+        return exchange(restUrl(tableAndQuery), HttpMethod.POST, new HttpEntity<>(body, jsonHeaders()));
+    }
+
+    public ResponseEntity<String> patch(String tableAndQuery, Object body) {
+        return exchange(restUrl(tableAndQuery), HttpMethod.PATCH, new HttpEntity<>(body, jsonHeaders()));
+    }
+
+    /**
+     * Insert without reading the rows back (Prefer: return=minimal); body may be a single row or an array.
+     */
+    public ResponseEntity<String> insert(String table, Object body) {
+        HttpHeaders headers = headers();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Prefer", "return=minimal");
+        return exchange(restUrl(table), HttpMethod.POST, new HttpEntity<>(body, headers));
+    }
+
+    public ResponseEntity<String> put(String tableAndQuery, Object body) {
+        return exchange(restUrl(tableAndQuery), HttpMethod.PUT, new HttpEntity<>(body, jsonHeaders()));
+    }
+
+    public ResponseEntity<String> delete(String tableAndQuery) {
+        return exchange(restUrl(tableAndQuery), HttpMethod.DELETE, new HttpEntity<>(headers()));
+    }
+
+    /**
+     * Proxies a PostgREST GET straight to the servlet output stream instead of buffering the body into a String.
+     * Upstream status and content type are kept; the body is gzip-compressed when enabled and accepted by the caller.
+     */
+    public ResponseEntity<StreamingResponseBody> stream(String tableAndQuery, String acceptEncoding) throws IOException {
+        ClientHttpRequest request = restTemplate.getRequestFactory()
+                .createRequest(restTemplate.getUriTemplateHandler().expand(restUrl(tableAndQuery)), HttpMethod.GET);
+        request.getHeaders().addAll(headers());
+        // Timed up to the response headers; the body is copied later, at the pace of the caller
+        String url = restUrl(tableAndQuery);
+        ClientHttpResponse upstream = timed(url, HttpMethod.GET, request::execute,
+                response -> response.getStatusCode().value());
+
+        boolean gzip = streamGzip && acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        HttpHeaders responseHeaders = new HttpHeaders();
+        MediaType contentType = upstream.getHeaders().getContentType();
+        if (contentType != null) {
+            responseHeaders.setContentType(contentType);
+        }
+        responseHeaders.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            responseHeaders.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        // The upstream connection stays leased until the body has been copied, then goes back to the pool
+        StreamingResponseBody body = out -> {
+            try (ClientHttpResponse response = upstream; InputStream in = response.getBody()) {
+                if (gzip) {
+                    GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192);
+                    in.transferTo(gzipOut);
+                    gzipOut.finish();
+                } else {
+                    in.transferTo(out);
+                }
+            }
+        };
+
+        return new ResponseEntity<>(body, responseHeaders, upstream.getStatusCode());
+    }
+
+    /**
+     * Fetches one keyset page. The PostgREST body is returned as-is; the cursor for the following page goes in
+     * X-Next-Cursor (absent on the last page) and the total row count in X-Total-Count.
+     * @param filters extra PostgREST filters (e.g. "inspectionNumber=eq.I-000001"), may be null
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public ResponseEntity<String> getPage(String table, String filters, Keyset keyset, Integer limit, String after) throws IOException {
+        return getPage(table, "*", filters, keyset, limit, after);
+    }
+
+    /**
+     * Same as {@link #getPage(String, String, Keyset, Integer, String)} with an explicit column list,
+     * which must include the keyset column(s).
+     */
+    public ResponseEntity<String> getPage(String table, String select, String filters, Keyset keyset, Integer limit, String after) throws IOException {
+        int pageSize = (limit == null || limit <= 0) ? maxPageSize : Math.min(limit, maxPageSize);
+
+        StringBuilder tableAndQuery = new StringBuilder(table).append("?select=").append(select).append('&');
+        if (filters != null && !filters.isEmpty()) {
+            tableAndQuery.append(filters).append('&');
+        }
+        tableAndQuery.append(keyset.query(after, pageSize));
+
+        HttpHeaders requestHeaders = headers();
+        requestHeaders.set("Prefer", "count=" + pageCountMode);
+        ResponseEntity<String> upstream = exchange(restUrl(tableAndQuery.toString()), HttpMethod.GET, new HttpEntity<>(requestHeaders));
+
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.setContentType(MediaType.APPLICATION_JSON);
+
+        // Content-Range looks like "0-24/3573" (or "*/0" for an empty page)
+        String contentRange = upstream.getHeaders().getFirst("Content-Range");
+        if (contentRange != null && contentRange.contains("/")) {
+            String total = contentRange.substring(contentRange.indexOf('/') + 1);
+            if (!total.equals("*")) {
+                responseHeaders.set("X-Total-Count", total);
+            }
+        }
+
+        String body = upstream.getBody() != null ? upstream.getBody() : "[]";
+        JsonNode rows = Json.MAPPER.readTree(body);
+        if (rows.isArray() && rows.size() == pageSize) {
+            String nextCursor = keyset.cursorFor(rows.get(rows.size() - 1));
+            if (nextCursor != null) {
+                responseHeaders.set("X-Next-Cursor", nextCursor);
+            }
+        }
+
+        return new ResponseEntity<>(body, responseHeaders, upstream.getStatusCode());
+    }
+
+    // ---- Supabase Storage ----
+
+    /**
+     * Stores an image under the given folder and returns its public URL.
+     * In content-addressed mode the object key is the SHA-256 of the bytes, so identical images are stored once:
+     * keys already known to exist (local cache, then a HEAD on the public URL) skip the upload entirely.
+     * Otherwise the key is a random UUID prefix plus the sanitized original file name.
+     */
+    public String storeImage(String folder, byte[] bytes, String originalFileName, String contentType) throws IOException {
+        if (!contentAddressedStorage) {
+            String sanitizedFileName = (originalFileName == null) ? "file" : originalFileName.replaceAll("[^a-zA-Z0-9.\\-_]", "_");
+            String fileName = UUID.randomUUID().toString() + "_" + sanitizedFileName;
+            return uploadObject(folder, fileName, bytes, contentType);
+        }
+
+        return putObjectIfAbsent(folder, contentHash(bytes) + extensionOf(originalFileName), bytes, contentType);
+    }
+
+    /**
+     * Uploads the object unless one with that name already exists; an object stored concurrently under the same
+     * name counts as stored. Only for names whose content never changes (content hashes, derived variants).
+     * @return The public URL of the object.
+     */
+    public String putObjectIfAbsent(String folder, String fileName, byte[] bytes, String contentType) throws IOException {
+        String objectKey = folder + "/" + fileName;
+        if (objectExists(folder, fileName)) {
+            rememberKey(objectKey);
+            return publicObjectUrl(folder, fileName);
+        }
+
+        try {
+            uploadObject(folder, fileName, bytes, contentType);
+        } catch (HttpClientErrorException e) {
+            // Another request stored the same content in the meantime (Supabase reports a duplicate as 400 or 409)
+            if (!isDuplicate(e)) {
+                throw e;
+            }
+        }
+        rememberKey(objectKey);
+        return publicObjectUrl(folder, fileName);
+    }
+
+    /**
+     * Uploads an object into the configured bucket under the given folder.
+     * @return The public URL of the stored object.
+     */
+    public String uploadObject(String folder, String fileName, byte[] bytes, String contentType) throws IOException {
+        HttpHeaders storageHeaders = headers();
+        storageHeaders.setContentType(MediaType.parseMediaType(contentType));
+
+        String storageUrl = UriComponentsBuilder.fromHttpUrl(supabaseUrl)
+                .path("/storage/v1/object/")
+                .pathSegment(bucketName, folder, fileName)
+                .toUriString();
+
+        exchange(storageUrl, HttpMethod.POST, new HttpEntity<>(bytes, storageHeaders));
+
+        return publicObjectUrl(folder, fileName);
+    }
+
+    public String publicObjectUrl(String folder, String fileName) {
+        return supabaseUrl + "/storage/v1/object/public/" + bucketName + "/" + folder + "/" + fileName;
+    }
+
+    // Known to exist locally, else a HEAD on the public URL
+    public boolean objectExists(String folder, String fileName) {
+        if (isKnownKey(folder + "/" + fileName)) {
+            return true;
+        }
+        try {
+            exchange(publicObjectUrl(folder, fileName), HttpMethod.HEAD, new HttpEntity<>(headers()));
+            return true;
+        } catch (HttpClientErrorException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a stored object back through its public URL.
+     */
+    public byte[] getObject(String folder, String fileName) {
+        String url = publicObjectUrl(folder, fileName);
+        return timed(url, HttpMethod.GET,
+                () -> restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers()), byte[].class),
+                response -> response.getStatusCode().value()).getBody();
+    }
+
+    private boolean isDuplicate(HttpClientErrorException e) {
+        return e.getStatusCode().value() == 409
+                || (e.getStatusCode().value() == 400 && e.getResponseBodyAsString().contains("Duplicate"));
+    }
+
+    private boolean isKnownKey(String objectKey) {
+        synchronized (knownKeys) {
+            return knownKeys.contains(objectKey);
+        }
+    }
+
+    private void rememberKey(String objectKey) {
+        synchronized (knownKeys) {
+            knownKeys.add(objectKey);
+        }
+    }
+
+    private static String contentHash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // ".png" style extension of the original file name, or "" if it has none
+    private static String extensionOf(String originalFileName) {
+        if (originalFileName == null || originalFileName.lastIndexOf('.') < 0) {
+            return "";
+        }
+        String extension = originalFileName.substring(originalFileName.lastIndexOf('.') + 1).replaceAll("[^a-zA-Z0-9]", "");
+        return extension.isEmpty() ? "" : "." + extension.toLowerCase();
+    }
+
+    // ---- Generic ----
+
+    /**
+     * Writes a JSON body; the generator writes to the connection (or the request buffer) directly.
+     */
+    @FunctionalInterface
+    public interface JsonBody {
+        void writeTo(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * POSTs a JSON body generated on the fly to any URL (e.g. the Lambda), without Supabase auth headers.
+     * With the pooled HttpComponents factory the body is streamed to the connection instead of being
+     * serialized into memory first; contentLength (or -1 for chunked) must match what the body writes.
+     */
+    public ResponseEntity<String> postJson(String url, long contentLength, JsonBody body) {
+        RequestCallback callback = request -> {
+            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            if (contentLength >= 0) {
+                request.getHeaders().setContentLength(contentLength);
+            }
+            if (request instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(out -> writeJson(out, body));
+            } else {
+                writeJson(request.getBody(), body);
+            }
+        };
+        return timed(url, HttpMethod.POST,
+                () -> restTemplate.execute(url, HttpMethod.POST, callback, restTemplate.responseEntityExtractor(String.class)),
+                response -> response.getStatusCode().value());
+    }
+
+    private void writeJson(OutputStream out, JsonBody body) throws IOException {
+        try (JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(out)) {
+            // The stream belongs to the request; only flush it
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            body.writeTo(generator);
+        }
+    }
+
+    /**
+     * Executes any request (including non-Supabase endpoints such as the Lambda) over the shared pool.
+     */
+    public ResponseEntity<String> exchange(String url, HttpMethod method, HttpEntity<?> entity) {
+        return timed(url, method, () -> restTemplate.exchange(url, method, entity, String.class),
+                response -> response.getStatusCode().value());
+    }
+
+    @FunctionalInterface
+    private interface UpstreamCall<R, E extends Exception> {
+        R call() throws E;
+    }
+
+    @FunctionalInterface
+    private interface StatusOf<R, E extends Exception> {
+        int status(R response) throws E;
+    }
+
+    // Records the call under upstream.requests; status is "IO_ERROR" when no response came back
+    private <R, E extends Exception> R timed(String url, HttpMethod method, UpstreamCall<R, E> call,
+                                             StatusOf<R, E> statusOf) throws E {
+        Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+        String status = "IO_ERROR";
+        try {
+            R response = call.call();
+            status = String.valueOf(statusOf.status(response));
+            return response;
+        } catch (RestClientResponseException e) {
+            status = String.valueOf(e.getStatusCode().value());
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(UPSTREAM_TIMER)
+                    .tags(upstreamTags(url))
+                    .tag("method", method.name())
+                    .tag("status", status)
+                    .publishPercentileHistogram()
+                    .register(Metrics.globalRegistry));
+        }
+    }
+
+    // dependency and table of a URL; only names from the path are used, never ids or query values
+    private String[] upstreamTags(String url) {
+        String restPrefix = supabaseUrl + "/rest/v1/";
+        String storagePrefix = supabaseUrl + "/storage/v1/object/";
+        if (url.startsWith(restPrefix)) {
+            return new String[] {"dependency", "supabase-rest", "table", firstSegment(url.substring(restPrefix.length()))};
+        }
+        if (url.startsWith(storagePrefix)) {
+            // object/{bucket}/{folder}/{name} or object/public/{bucket}/{folder}/{name}
+            String path = url.substring(storagePrefix.length());
+            if (path.startsWith("public/")) {
+                path = path.substring("public/".length());
+            }
+            int folderStart = path.indexOf('/') + 1;
+            String folder = folderStart > 0 ? firstSegment(path.substring(folderStart)) : "none";
+            return new String[] {"dependency", "supabase-storage", "table", folder};
+        }
+        return new String[] {"dependency", "inference", "table", "none"};
+    }
+
+    private static String firstSegment(String path) {
+        int end = path.length();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' || c == '?') {
+                end = i;
+                break;
+            }
+        }
+        return end > 0 ? path.substring(0, end) : "none";
+    }
+
+    /**
+     * Creates and returns a HttpHeaders object with the required Supabase authentication headers.
+     */
+    public HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("apikey", supabaseApiKey);
+        headers.set("Authorization", "Bearer " + supabaseApiKey);
+        return headers;
+    }
+
+    private HttpHeaders jsonHeaders() {
+        HttpHeaders headers = headers();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Prefer", "return=representation");
+        return headers;
+    }
+
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    /**
+     * Snapshot of the connection pool, used to size max-total / max-per-route.
+     * "pending" > 0 means callers are waiting for a connection (pool saturated).
+     */
+    public Map<String, Object> poolStats() {
+        PoolStats stats = getPoolStats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("leased", stats.getLeased());
+        result.put("available", stats.getAvailable());
+        result.put("pending", stats.getPending());
+        result.put("max", stats.getMax());
+        result.put("maxPerRoute", connectionManager.getDefaultMaxPerRoute());
+        result.put("routes", connectionManager.getRoutes().size());
+        return result;
+    }
+
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.transformer_app.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A CompletableFuture for a task run on an executor that can really be cancelled. CompletableFuture.supplyAsync
+ * ignores cancel(true) and lets the task run on; here cancel(true) interrupts the worker through a FutureTask and
+ * runs the cancel actions the task registered with onCancel (SupabaseClient aborts the HTTP request in flight),
+ * so a cancelled upload or detector call gives its thread and connection back right away.
+ */
+public final class CancellableFuture<T> extends CompletableFuture<T> {
+
+    // The task running on this thread, for onCancel
+    private static final ThreadLocal<CancellableFuture<?>> CURRENT = new ThreadLocal<>();
+
+    private final FutureTask<T> task;
+    private final List<Runnable> cancelActions = new ArrayList<>();
+    private boolean finished;
+
+    private CancellableFuture(Callable<T> callable) {
+        this.task = new FutureTask<>(() -> run(callable)) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    CancellableFuture.this.complete(get());
+                } catch (ExecutionException e) {
+                    CancellableFuture.this.completeExceptionally(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs the callable on the executor.
+     * @throws java.util.concurrent.RejectedExecutionException if the executor does not take the task
+     */
+    public static <T> CancellableFuture<T> submit(Callable<T> callable, Executor executor) {
+        CancellableFuture<T> future = new CancellableFuture<>(callable);
+        executor.execute(future.task);
+        return future;
+    }
+
+    /**
+     * Registers an action (e.g. aborting a blocking HTTP request) to run if the task on the current thread
+     * is cancelled before it finishes. Does nothing outside of a CancellableFuture task.
+     */
+    public static void onCancel(Runnable action) {
+        CancellableFuture<?> current = CURRENT.get();
+        if (current != null) {
+            current.addCancelAction(action);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            // Taken before the interrupt, which lets the task finish and drop its actions
+            List<Runnable> actions;
+            synchronized (this) {
+                actions = finished ? List.of() : new ArrayList<>(cancelActions);
+                cancelActions.clear();
+            }
+            task.cancel(mayInterruptIfRunning);
+            actions.forEach(Runnable::run);
+        }
+        return cancelled;
+    }
+
+    private T run(Callable<T> callable) throws Exception {
+        // Restored afterwards: with a caller-runs executor the task runs inside another one
+        CancellableFuture<?> outer = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return callable.call();
+        } finally {
+            CURRENT.set(outer);
+            synchronized (this) {
+                finished = true;
+                cancelActions.clear();
+            }
+        }
+    }
+
+    private void addCancelAction(Runnable action) {
+        synchronized (this) {
+            if (!finished && !isCancelled()) {
+                cancelActions.add(action);
+                return;
+            }
+        }
+        if (isCancelled()) {
+            action.run();
+        }
+    }
+}
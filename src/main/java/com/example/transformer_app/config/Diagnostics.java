@@ -0,0 +1,136 @@
+package com.example.transformer_app.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Debug output of request payloads (detections, log entries, rows sent to PostgREST) through SLF4J, one logger per
+ * category under "diagnostics." so each can be switched on with logging.level.diagnostics.&lt;category&gt;=DEBUG.
+ * A message is only formatted when its logger is at DEBUG and the call is sampled (diagnostics.sample-rate);
+ * payloads passed through payload() are serialized at that point, compactly and cut at diagnostics.max-payload-chars.
+ * Writing to the console happens on the async appender's thread (logback-spring.xml).
+ */
+public final class Diagnostics {
+
+    private static volatile double sampleRate = 1.0;
+    private static volatile int maxPayloadChars = 2000;
+
+    private final Logger logger;
+
+    private Diagnostics(String category) {
+        this.logger = LoggerFactory.getLogger("diagnostics." + category);
+    }
+
+    public static Diagnostics forCategory(String category) {
+        return new Diagnostics(category);
+    }
+
+    // Set from the diagnostics.* properties at startup (DiagnosticsConfig)
+    static void configure(double sampleRate, int maxPayloadChars) {
+        Diagnostics.sampleRate = sampleRate;
+        Diagnostics.maxPayloadChars = maxPayloadChars;
+    }
+
+    /**
+     * Cheap level check, for call sites that would otherwise box or build their arguments for nothing.
+     */
+    public boolean isEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    public void debug(String format, Object arg) {
+        if (shouldLog()) {
+            logger.debug(format, arg);
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (shouldLog()) {
+            logger.debug(format, arg1, arg2);
+        }
+    }
+
+    public void debug(String format, Object... args) {
+        if (shouldLog()) {
+            logger.debug(format, args);
+        }
+    }
+
+    private boolean shouldLog() {
+        return logger.isDebugEnabled() && (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Wraps a value for a log argument: it is serialized as JSON (strings are used as they are) only if the
+     * message is actually written, and cut at the configured size.
+     */
+    public static Object payload(Object value) {
+        return new Payload(value);
+    }
+
+    private static final class Payload {
+        private final Object value;
+
+        Payload(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            int cap = maxPayloadChars;
+            if (value instanceof CharSequence text) {
+                return text.length() <= cap ? text.toString() : text.subSequence(0, cap) + truncated(text.length());
+            }
+            CappedWriter out = new CappedWriter(cap);
+            try {
+                Json.WRITER.writeValue(out, value);
+            } catch (IOException e) {
+                if (!out.full) {
+                    return "<unserializable " + (value != null ? value.getClass().getSimpleName() : "null") + ">";
+                }
+            }
+            return out.full ? out.text + truncated(-1) : out.text.toString();
+        }
+
+        private static String truncated(int length) {
+            return length >= 0 ? "...(" + length + " chars, truncated)" : "...(truncated)";
+        }
+    }
+
+    // Stops the serialization (by failing the write) once the cap is reached
+    private static final class CappedWriter extends Writer {
+        private final StringBuilder text = new StringBuilder();
+        private final int cap;
+        private boolean full;
+
+        CappedWriter(int cap) {
+            this.cap = cap;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            if (full) {
+                throw new IOException("payload cap reached");
+            }
+            int room = cap - text.length();
+            if (length > room) {
+                text.append(buffer, offset, room);
+                full = true;
+                throw new IOException("payload cap reached");
+            }
+            text.append(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.transformer_app.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Applies the diagnostics.* properties to Diagnostics, which is static so any class can declare its loggers as
+ * constants. Levels are regular logging.level.diagnostics.* properties.
+ */
+@Configuration
+public class DiagnosticsConfig {
+
+    public DiagnosticsConfig(
+            @Value("${diagnostics.sample-rate:1.0}") double sampleRate,
+            @Value("${diagnostics.max-payload-chars:2000}") int maxPayloadChars
+    ) {
+        Diagnostics.configure(sampleRate, maxPayloadChars);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.transformer_app.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Runs the storage upload and the Lambda call of an image concurrently.
+     * Bounded: when the queue is full the request thread runs the stage itself, which throttles callers.
+     */
+    @Bean(name = "analysisExecutor")
+    public ThreadPoolTaskExecutor analysisExecutor(
+            @Value("${analysis.executor.threads:16}") int threads,
+            @Value("${analysis.executor.queue:64}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("analysis-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Workers of the asynchronous analysis jobs (AnalysisJobService).
+     * The queue holds every admitted job, so admission control in the service is the only place requests are refused.
+     */
+    @Bean(name = "jobExecutor")
+    public ThreadPoolTaskExecutor jobExecutor(
+            @Value("${analysis.jobs.threads:4}") int threads,
+            @Value("${analysis.jobs.max-pending:100}") int maxPending
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(maxPending);
+        executor.setThreadNamePrefix("analysis-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    /**
+     * Runs detector calls for ResilientInferenceClient. No queue: when every slot is busy the call fails fast
+     * instead of waiting behind a slow detector.
+     */
+    @Bean(name = "inferenceExecutor")
+    public ThreadPoolTaskExecutor inferenceExecutor(@Value("${inference.max-concurrent:32}") int maxConcurrent) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("inference-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * Decodes and resizes images before inference (ImagePreprocessor). CPU-bound, so one thread per core;
+     * when the queue is full the calling thread does the work itself.
+     */
+    @Bean(name = "preprocessExecutor")
+    public ThreadPoolTaskExecutor preprocessExecutor(
+            @Value("${inference.preprocess.threads:0}") int threads,
+            @Value("${inference.preprocess.queue:64}") int queueCapacity
+    ) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("preprocess-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Generates thumbnail/medium image variants after the upload request has returned.
+     * Bounded queue of image URLs; when it is full the variants of that image are skipped and its rows keep
+     * the original's URL (see ImageVariantService).
+     */
+    @Bean(name = "variantExecutor")
+    public ThreadPoolTaskExecutor variantExecutor(
+            @Value("${images.variants.threads:2}") int threads,
+            @Value("${images.variants.queue:100}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-variants-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
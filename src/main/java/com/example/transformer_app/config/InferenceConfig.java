@@ -0,0 +1,37 @@
+package com.example.transformer_app.config;
+
+import com.example.transformer_app.client.CircuitBreaker;
+import com.example.transformer_app.client.InferenceClient;
+import com.example.transformer_app.client.ResilientInferenceClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.concurrent.Executor;
+
+@Configuration
+public class InferenceConfig {
+
+    /**
+     * The InferenceClient the services use: deadline, circuit breaker and hedging around the transport
+     * selected with inference.client.
+     */
+    @Bean
+    @Primary
+    public ResilientInferenceClient resilientInferenceClient(
+            @Qualifier(InferenceClient.BACKEND) InferenceClient backend,
+            @Qualifier("inferenceExecutor") Executor inferenceExecutor,
+            @Value("${inference.timeout-ms:30000}") long timeoutMs,
+            @Value("${inference.breaker.window:20}") int breakerWindow,
+            @Value("${inference.breaker.min-calls:10}") int breakerMinCalls,
+            @Value("${inference.breaker.failure-rate:0.5}") double breakerFailureRate,
+            @Value("${inference.breaker.open-ms:30000}") long breakerOpenMs,
+            @Value("${inference.hedge.enabled:false}") boolean hedgingEnabled,
+            @Value("${inference.hedge.min-delay-ms:200}") long minHedgeDelayMs
+    ) {
+        CircuitBreaker breaker = new CircuitBreaker(breakerWindow, breakerMinCalls, breakerFailureRate, breakerOpenMs);
+        return new ResilientInferenceClient(backend, inferenceExecutor, breaker, timeoutMs, hedgingEnabled, minHedgeDelayMs);
+    }
+}
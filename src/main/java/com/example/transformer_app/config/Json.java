@@ -0,0 +1,50 @@
+package com.example.transformer_app.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The one Jackson setup of the application. Building a mapper, and resolving the deserializer of a type
+ * for every readValue(..., new TypeReference...) call, is the expensive part of Jackson; here both happen once
+ * and the resulting ObjectReaders/ObjectWriters (immutable, thread-safe) are shared.
+ * Blackbird replaces reflective getter/setter calls with generated lambdas.
+ */
+public final class Json {
+
+    public static final ObjectMapper MAPPER = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .addModule(new BlackbirdModule())
+            .build();
+
+    // PostgREST answers: an array of rows
+    public static final ObjectReader ROWS = MAPPER.readerFor(new TypeReference<List<Map<String, Object>>>() {});
+    public static final ObjectReader ROW = MAPPER.readerFor(new TypeReference<Map<String, Object>>() {});
+
+    public static final ObjectWriter WRITER = MAPPER.writer();
+
+    private static final Map<Type, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    private Json() {
+    }
+
+    /**
+     * Reader of a generic type, created on first use; keep the result in a static field where possible.
+     */
+    public static ObjectReader reader(TypeReference<?> type) {
+        return READERS.computeIfAbsent(type.getType(), t -> MAPPER.readerFor(MAPPER.constructType(t)));
+    }
+
+    public static ObjectReader reader(Class<?> type) {
+        return READERS.computeIfAbsent(type, t -> MAPPER.readerFor(type));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.transformer_app.config;
+
+import com.example.transformer_app.client.ResilientInferenceClient;
+import com.example.transformer_app.client.SupabaseClient;
+import com.example.transformer_app.service.AnalysisJobService;
+import com.example.transformer_app.service.InferenceCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Publishes the counters the services already keep (pool, job queue, circuit breaker, inference cache)
+ * as Micrometer meters, so they show up on /actuator/prometheus next to the upstream request timers.
+ * The ThreadPoolTaskExecutor beans are bound by Spring Boot itself (executor.* meters).
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder upstreamPoolMetrics(SupabaseClient supabaseClient) {
+        return registry -> {
+            Gauge.builder("upstream.pool.leased", supabaseClient, c -> c.getPoolStats().getLeased())
+                    .description("Upstream HTTP connections in use")
+                    .register(registry);
+            Gauge.builder("upstream.pool.available", supabaseClient, c -> c.getPoolStats().getAvailable())
+                    .description("Idle upstream HTTP connections")
+                    .register(registry);
+            Gauge.builder("upstream.pool.pending", supabaseClient, c -> c.getPoolStats().getPending())
+                    .description("Requests waiting for an upstream HTTP connection")
+                    .register(registry);
+            Gauge.builder("upstream.pool.max", supabaseClient, c -> c.getPoolStats().getMax())
+                    .description("Upstream HTTP connection pool size")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder analysisJobMetrics(AnalysisJobService analysisJobService) {
+        return registry -> Gauge.builder("analysis.jobs.pending", analysisJobService, AnalysisJobService::getPendingJobs)
+                .description("Admitted analysis jobs that have not finished")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder inferenceMetrics(ResilientInferenceClient inferenceClient) {
+        return registry -> {
+            Gauge.builder("inference.circuit.open", inferenceClient,
+                            c -> "CLOSED".equals(c.stats().get("state")) ? 0 : 1)
+                    .description("1 while the detector circuit breaker is open or half-open")
+                    .register(registry);
+            counter(registry, "inference.hedges.sent", inferenceClient, ResilientInferenceClient::stats, "hedgesSent");
+            counter(registry, "inference.hedges.won", inferenceClient, ResilientInferenceClient::stats, "hedgesWon");
+            counter(registry, "inference.timeouts", inferenceClient, ResilientInferenceClient::stats, "timeouts");
+            counter(registry, "inference.rejected", inferenceClient, ResilientInferenceClient::stats, "rejected");
+        };
+    }
+
+    @Bean
+    public MeterBinder inferenceCacheMetrics(InferenceCache inferenceCache) {
+        return registry -> {
+            Gauge.builder("inference.cache.size", inferenceCache, c -> number(c.stats(), "size"))
+                    .description("Entries in the in-memory detection cache")
+                    .register(registry);
+            counter(registry, "inference.cache.hits", inferenceCache, InferenceCache::stats, "hits");
+            counter(registry, "inference.cache.disk.hits", inferenceCache, InferenceCache::stats, "diskHits");
+            counter(registry, "inference.cache.misses", inferenceCache, InferenceCache::stats, "misses");
+            counter(registry, "inference.cache.evictions", inferenceCache, InferenceCache::stats, "evictions");
+        };
+    }
+
+    // The meter keeps only a weak reference to source, so pass the bean rather than a lambda over it
+    private static <T> void counter(MeterRegistry registry, String name, T source,
+                                    Function<T, Map<String, Object>> stats, String key) {
+        FunctionCounter.builder(name, source, s -> number(stats.apply(s), key)).register(registry);
+    }
+
+    private static double number(Map<String, Object> stats, String key) {
+        Object value = stats.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+}
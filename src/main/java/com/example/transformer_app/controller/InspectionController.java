@@ -1,72 +1,100 @@
 package com.example.transformer_app.controller;
 
+import com.example.transformer_app.client.Keyset;
+import com.example.transformer_app.client.SupabaseClient;
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.dto.AnalysisJob;
+import com.example.transformer_app.dto.Detection;
+import com.example.transformer_app.service.AnalysisJobService;
+import com.example.transformer_app.service.AnomalyConflictException;
+import com.example.transformer_app.service.AnomalyLogService;
 import com.example.transformer_app.service.InspectionService;
+import com.example.transformer_app.service.JobQueueFullException;
+import com.example.transformer_app.service.TransformerCache;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.core.type.TypeReference;
 import java.util.*;
 import java.io.IOException;
+import java.net.URI;
 
 @RestController
 @RequestMapping("/api/inspections")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {"X-Next-Cursor", "X-Total-Count", "ETag", "Server-Timing", "Location", "Retry-After", "X-Analysis-Status", "X-Analysis-Job"})
 public class InspectionController {
 
-    @Value("${supabase.url}")
-    private String supabaseUrl;
-
-    @Value("${supabase.apikey}")
-    private String supabaseApiKey;
+    private static final ObjectReader BATCH_METADATA = Json.reader(new TypeReference<List<Map<String, String>>>() {});
 
     @Autowired
     private InspectionService inspectionService;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private AnomalyLogService anomalyLogService;
+
+    @Autowired
+    private SupabaseClient supabaseClient;
+
+    @Autowired
+    private AnalysisJobService analysisJobService;
+
+    @Autowired
+    private TransformerCache transformerCache;
 
+    // Get all inspections, or a single keyset page when limit/after are given
     @GetMapping
-    public ResponseEntity<String> getAll() {
-        HttpHeaders headers = getHeaders();
-        String url = supabaseUrl + "/rest/v1/inspections?select=*";
-        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    public ResponseEntity<?> getAll(
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) throws IOException {
+        if (limit == null && after == null) {
+            return supabaseClient.stream("inspections?select=*", acceptEncoding);
+        }
+        try {
+            return supabaseClient.getPage("inspections", null, Keyset.INSPECTIONS, limit, after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("{\"error\":\"" + e.getMessage() + "\"}");
+        }
     }
 
     @GetMapping("/{iid}")
     public ResponseEntity<?> getInspectionWithBaselineImage(@PathVariable String iid) {
-        HttpHeaders headers = getHeaders();
-        String inspectionUrl = supabaseUrl + "/rest/v1/inspections?iid=eq." + iid + "&select=*";
-        ResponseEntity<String> inspectionResponse = restTemplate.exchange(inspectionUrl, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        // One round trip with the transformer embedded; without a foreign key, the inspection alone
+        ResponseEntity<String> inspectionResponse = supabaseClient.getEmbedded("inspections", "transformers(baselineImage)", "iid=eq." + iid);
+        boolean embedded = inspectionResponse != null;
+        if (!embedded) {
+            inspectionResponse = supabaseClient.get("inspections?iid=eq." + iid + "&select=*");
+        }
 
-        ObjectMapper mapper = new ObjectMapper();
         List<Map<String, Object>> inspectionList;
         try {
-            inspectionList = mapper.readValue(inspectionResponse.getBody(), new TypeReference<List<Map<String, Object>>>() {});
+            inspectionList = Json.ROWS.readValue(inspectionResponse.getBody());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error parsing inspection data.");
         }
         if (inspectionList.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Inspection not found.");
         }
-        Map<String, Object> inspection = inspectionList.get(0);
-
-        String transformerNumber = (String) inspection.get("transformerNumber");
-        String transformerUrl = supabaseUrl + "/rest/v1/transformers?transformerNumber=eq." + transformerNumber + "&select=baselineImage";
-        ResponseEntity<String> transformerResponse = restTemplate.exchange(transformerUrl, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        Map<String, Object> result = new HashMap<>(inspectionList.get(0));
 
-        List<Map<String, Object>> transformerList;
-        try {
-            transformerList = mapper.readValue(transformerResponse.getBody(), new TypeReference<List<Map<String, Object>>>() {});
-        } catch (Exception e) {
-            transformerList = new ArrayList<>();
+        Map<?, ?> transformer;
+        if (embedded) {
+            // Many-to-one embed: {"baselineImage": ...}, or null when the transformer row is missing
+            Object embeddedTransformer = result.remove("transformers");
+            transformer = embeddedTransformer instanceof Map ? (Map<?, ?>) embeddedTransformer : null;
+        } else {
+            // Transformer metadata is static enough to come from the cache instead of a second round trip
+            try {
+                transformer = transformerCache.getByTransformerNumber((String) result.get("transformerNumber"));
+            } catch (Exception e) {
+                transformer = null;
+            }
         }
-        String baselineImage = transformerList.isEmpty() ? null : (String) transformerList.get(0).get("baselineImage");
-
-        Map<String, Object> result = new HashMap<>(inspection);
-        result.put("baselineImage", baselineImage);
+        result.put("baselineImage", transformer == null ? null : transformer.get("baselineImage"));
 
         return ResponseEntity.ok(result);
     }
@@ -79,7 +107,8 @@ public class InspectionController {
             @RequestParam("maintainanceDate") String maintainanceDate,
             @RequestParam("status") String status,
             @RequestParam(value = "inspector", required = false) String inspector,
-            @RequestParam(value = "refImage", required = false) MultipartFile refImage
+            @RequestParam(value = "refImage", required = false) MultipartFile refImage,
+            @RequestParam(value = "async", defaultValue = "false") boolean async
     ) {
         try {
             // Validate presence of transformerNumber and return a clear 400 if missing
@@ -88,8 +117,16 @@ public class InspectionController {
                         .body("{\"error\":\"Missing required parameter: transformerNumber\"}");
             }
 
+            // ?async=true: store the image and row now, analyse in the background
+            if (async && refImage != null && !refImage.isEmpty()) {
+                return accepted(analysisJobService.submitCreateInspection(
+                        transformerNumber, inspectionNumber, inspectionDate, maintainanceDate, status, inspector, refImage));
+            }
+
             // Pass inspectionNumber and inspector to service (can be null, service will auto-generate inspectionNumber)
             return inspectionService.createInspection(transformerNumber, inspectionNumber, inspectionDate, maintainanceDate, status, inspector, refImage);
+        } catch (JobQueueFullException e) {
+            return queueFull(e);
         } catch (IOException e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -97,14 +134,81 @@ public class InspectionController {
         }
     }
 
+    /**
+     * Creates many inspections in one request.
+     * refImages are matched by position with the entries of metadata, a JSON array of objects with any of
+     * transformerNumber, inspectionNumber, inspectionDate, maintainanceDate, status and inspector;
+     * the plain request parameters are the defaults for every item.
+     * Returns one result per item; 207 when some items failed.
+     * The whole request must fit spring.servlet.multipart.max-request-size, so larger sets are sent in chunks.
+     */
+    @PostMapping(path = "/batch", consumes = {"multipart/form-data"})
+    public ResponseEntity<?> createInspectionsBatch(
+            @RequestParam(value = "refImages", required = false) List<MultipartFile> refImages,
+            @RequestParam(value = "metadata", required = false) String metadata,
+            @RequestParam(value = "transformerNumber", required = false) String transformerNumber,
+            @RequestParam(value = "inspectionDate", required = false) String inspectionDate,
+            @RequestParam(value = "maintainanceDate", required = false) String maintainanceDate,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "inspector", required = false) String inspector
+    ) {
+        List<MultipartFile> images = refImages != null ? refImages : Collections.emptyList();
+        List<Map<String, String>> overrides;
+        try {
+            overrides = metadata == null || metadata.isBlank() ? Collections.emptyList()
+                    : BATCH_METADATA.readValue(metadata);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("{\"error\":\"metadata must be a JSON array of objects\"}");
+        }
+
+        int count = Math.max(images.size(), overrides.size());
+        if (count == 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("{\"error\":\"No refImages or metadata given\"}");
+        }
+
+        List<Map<String, String>> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, String> item = new HashMap<>();
+            item.put("transformerNumber", transformerNumber);
+            item.put("inspectionDate", inspectionDate);
+            item.put("maintainanceDate", maintainanceDate);
+            item.put("status", status);
+            item.put("inspector", inspector);
+            if (i < overrides.size() && overrides.get(i) != null) {
+                item.putAll(overrides.get(i));
+            }
+            items.add(item);
+        }
+
+        try {
+            List<Map<String, Object>> results = inspectionService.createInspectionsBatch(items, images);
+            boolean allCreated = results.stream().allMatch(result -> "created".equals(result.get("status")));
+            return ResponseEntity.status(allCreated ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(results);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("{\"error\":\"Failed to create inspections: " + e.getMessage() + "\"}");
+        }
+    }
+
     @PostMapping("/{iid}/refImage")
     public ResponseEntity<String> updateRefImage(
             @PathVariable Long iid,
             @RequestParam("refImage") MultipartFile refImage,
-            @RequestParam(value = "threshold", required = false) Double threshold
+            @RequestParam(value = "threshold", required = false) Double threshold,
+            @RequestParam(value = "async", defaultValue = "false") boolean async
     ) {
         try {
+            if (async && !refImage.isEmpty()) {
+                return accepted(analysisJobService.submitRefImage(iid, refImage, threshold));
+            }
             return inspectionService.updateInspectionRefImage(iid, refImage, threshold);
+        } catch (JobQueueFullException e) {
+            return queueFull(e);
+        } catch (AnomalyConflictException e) {
+            return conflict(e);
         } catch (RuntimeException e) {
             // Handle case where inspection is not found
             if (e.getMessage().contains("not found")) {
@@ -132,10 +236,35 @@ public class InspectionController {
         }
     }
 
+    // Append-only anomaly history, oldest first, paged with ?limit=&after={X-Next-Cursor}
+    @GetMapping("/{iid}/anomalies/log")
+    public ResponseEntity<String> getAnomaliesLog(
+            @PathVariable Long iid,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) String after
+    ) {
+        try {
+            return anomalyLogService.getLog(iid, limit, after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("{\"error\":\"Failed to fetch anomaly log: " + e.getMessage() + "\"}");
+        }
+    }
+
     @PostMapping(path = "/{iid}/anomalies", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> addAnomaly(@PathVariable Long iid, @RequestBody Map<String, Object> anomaly) {
+    public ResponseEntity<String> addAnomaly(
+            @PathVariable Long iid,
+            @RequestBody Detection anomaly,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
         try {
-            return inspectionService.addAnomaly(iid, anomaly);
+            return inspectionService.addAnomaly(iid, anomaly, ifMatch);
+        } catch (AnomalyConflictException e) {
+            return conflict(e);
         } catch (IOException e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -144,9 +273,16 @@ public class InspectionController {
     }
 
     @PutMapping(path = "/{iid}/anomalies/{anomalyId}", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> updateAnomaly(@PathVariable Long iid, @PathVariable String anomalyId, @RequestBody Map<String, Object> anomaly) {
+    public ResponseEntity<String> updateAnomaly(
+            @PathVariable Long iid,
+            @PathVariable String anomalyId,
+            @RequestBody Detection anomaly,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
         try {
-            return inspectionService.updateAnomaly(iid, anomalyId, anomaly);
+            return inspectionService.updateAnomaly(iid, anomalyId, anomaly, ifMatch);
+        } catch (AnomalyConflictException e) {
+            return conflict(e);
         } catch (RuntimeException e) {
             if (e.getMessage().contains("not found")) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -162,9 +298,15 @@ public class InspectionController {
     }
 
     @DeleteMapping("/{iid}/anomalies/{anomalyId}")
-    public ResponseEntity<String> deleteAnomaly(@PathVariable Long iid, @PathVariable String anomalyId) {
+    public ResponseEntity<String> deleteAnomaly(
+            @PathVariable Long iid,
+            @PathVariable String anomalyId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
         try {
-            return inspectionService.deleteAnomaly(iid, anomalyId);
+            return inspectionService.deleteAnomaly(iid, anomalyId, ifMatch);
+        } catch (AnomalyConflictException e) {
+            return conflict(e);
         } catch (RuntimeException e) {
             if (e.getMessage().contains("not found")) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -179,10 +321,29 @@ public class InspectionController {
         }
     }
 
-    private HttpHeaders getHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("apikey", supabaseApiKey);
-        headers.set("Authorization", "Bearer " + supabaseApiKey);
-        return headers;
+    // 202 pointing at the job that will write the anomalies
+    private ResponseEntity<String> accepted(AnalysisJob job) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/jobs/" + job.getId()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"jobId\":\"" + job.getId() + "\",\"iid\":" + job.getIid() + ",\"status\":\"" + job.getStatus() + "\"}");
+    }
+
+    // 503 with Retry-After so clients back off while the analysis queue drains
+    private ResponseEntity<String> queueFull(JobQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body("{\"error\":\"" + e.getMessage() + "\"}");
+    }
+
+    // 412 if the client's If-Match no longer holds, 409 if merging without one kept losing; with the current
+    // ETag (when known) so the client can reload and retry
+    private ResponseEntity<String> conflict(AnomalyConflictException e) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(
+                e.isPreconditionFailed() ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT);
+        if (e.getCurrentETag() != null) {
+            builder.eTag(e.getCurrentETag());
+        }
+        return builder.body("{\"error\":\"" + e.getMessage() + "\"}");
     }
-}
\ No newline at end of file
+}
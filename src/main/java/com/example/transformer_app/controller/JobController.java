@@ -0,0 +1,35 @@
+package com.example.transformer_app.controller;
+
+import com.example.transformer_app.dto.AnalysisJob;
+import com.example.transformer_app.service.AnalysisJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/jobs")
+@CrossOrigin(origins = "*")
+public class JobController {
+
+    private final AnalysisJobService analysisJobService;
+
+    @Autowired
+    public JobController(AnalysisJobService analysisJobService) {
+        this.analysisJobService = analysisJobService;
+    }
+
+    /**
+     * Status of an asynchronous image analysis (QUEUED, RUNNING, SUCCEEDED or FAILED)
+     * GET /api/jobs/{id}
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getJob(@PathVariable String id) {
+        AnalysisJob job = analysisJobService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("{\"error\":\"Job " + id + " not found\"}");
+        }
+        return ResponseEntity.ok(job);
+    }
+}
@@ -3,6 +3,7 @@ package com.example.transformer_app.controller;
 import com.example.transformer_app.service.MaintenanceService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -12,7 +13,7 @@ import java.util.Map;
 
 @RestController
 @RequestMapping("/api/maintenance")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {"X-Next-Cursor", "X-Total-Count"})
 public class MaintenanceController {
 
     private final MaintenanceService maintenanceService;
@@ -63,11 +64,22 @@ public class MaintenanceController {
     /**
      * Get all maintenance records
      * GET /api/maintenance
+     * GET /api/maintenance?limit=50&after={X-Next-Cursor of the previous page}
      */
     @GetMapping
-    public ResponseEntity<String> getAllMaintenance() {
+    public ResponseEntity<?> getAllMaintenance(
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
         try {
-            return maintenanceService.getAllMaintenance();
+            if (limit == null && after == null) {
+                return maintenanceService.getAllMaintenance(acceptEncoding);
+            }
+            return maintenanceService.getMaintenancePage(limit, after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("{\"error\": \"" + e.getMessage() + "\"}");
         } catch (Exception e) {
             e.printStackTrace();
             System.err.println("Error fetching maintenance records: " + e.getMessage());
@@ -95,11 +107,22 @@ public class MaintenanceController {
     /**
      * Get maintenance records by inspection number
      * GET /api/maintenance/inspection/{inspectionNumber}
+     * GET /api/maintenance/inspection/{inspectionNumber}?limit=50&after={cursor}
      */
     @GetMapping("/inspection/{inspectionNumber}")
-    public ResponseEntity<String> getMaintenanceByInspectionNumber(@PathVariable String inspectionNumber) {
+    public ResponseEntity<String> getMaintenanceByInspectionNumber(
+            @PathVariable String inspectionNumber,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) String after
+    ) {
         try {
-            return maintenanceService.getMaintenanceByInspectionNumber(inspectionNumber);
+            if (limit == null && after == null) {
+                return maintenanceService.getMaintenanceByInspectionNumber(inspectionNumber);
+            }
+            return maintenanceService.getMaintenancePageByInspectionNumber(inspectionNumber, limit, after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("{\"error\": \"" + e.getMessage() + "\"}");
         } catch (Exception e) {
             e.printStackTrace();
             System.err.println("Error fetching maintenance by inspection number: " + e.getMessage());
@@ -0,0 +1,67 @@
+package com.example.transformer_app.controller;
+
+import com.example.transformer_app.client.ResilientInferenceClient;
+import com.example.transformer_app.client.SupabaseClient;
+import com.example.transformer_app.service.InferenceCache;
+import com.example.transformer_app.service.TransformerCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/system")
+@CrossOrigin(origins = "*")
+public class SystemController {
+
+    private final SupabaseClient supabaseClient;
+    private final InferenceCache inferenceCache;
+    private final ResilientInferenceClient inferenceClient;
+    private final TransformerCache transformerCache;
+
+    @Autowired
+    public SystemController(SupabaseClient supabaseClient, InferenceCache inferenceCache,
+                            ResilientInferenceClient inferenceClient, TransformerCache transformerCache) {
+        this.supabaseClient = supabaseClient;
+        this.inferenceCache = inferenceCache;
+        this.inferenceClient = inferenceClient;
+        this.transformerCache = transformerCache;
+    }
+
+    /**
+     * Connection pool saturation stats for the shared upstream HTTP client
+     * GET /api/system/http-pool
+     */
+    @GetMapping("/http-pool")
+    public ResponseEntity<Map<String, Object>> getHttpPoolStats() {
+        return ResponseEntity.ok(supabaseClient.poolStats());
+    }
+
+    /**
+     * Hit/miss/eviction counters of the detection result cache
+     * GET /api/system/inference-cache
+     */
+    @GetMapping("/inference-cache")
+    public ResponseEntity<Map<String, Object>> getInferenceCacheStats() {
+        return ResponseEntity.ok(inferenceCache.stats());
+    }
+
+    /**
+     * Circuit breaker state, timeouts and hedging counters of the detector calls
+     * GET /api/system/inference
+     */
+    @GetMapping("/inference")
+    public ResponseEntity<Map<String, Object>> getInferenceStats() {
+        return ResponseEntity.ok(inferenceClient.stats());
+    }
+
+    /**
+     * Size and hit rate of the transformer row cache, per key kind
+     * GET /api/system/transformer-cache
+     */
+    @GetMapping("/transformer-cache")
+    public ResponseEntity<Map<String, Object>> getTransformerCacheStats() {
+        return ResponseEntity.ok(transformerCache.stats());
+    }
+}
@@ -1,14 +1,14 @@
 // src/main/java/com/example/transformer_app/controller/TransformerController.java
 package com.example.transformer_app.controller;
 
+import com.example.transformer_app.client.Keyset;
+import com.example.transformer_app.client.SupabaseClient;
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.service.TransformerCache;
 import com.example.transformer_app.service.TransformerService;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -20,26 +20,34 @@ import java.util.Map;
 
 @RestController
 @RequestMapping("/api/transformers")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {"X-Next-Cursor", "X-Total-Count"})
 public class TransformerController {
 
-    @Value("${supabase.url}")
-    private String supabaseUrl;
-
-    @Value("${supabase.apikey}")
-    private String supabaseApiKey;
-
     @Autowired
     public TransformerService transformerService;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private SupabaseClient supabaseClient;
+
+    @Autowired
+    private TransformerCache transformerCache;
 
-    // Get all transformers
+    // Get all transformers, or a single keyset page when limit/after are given
     @GetMapping
-    public ResponseEntity<String> getAll() {
-        HttpHeaders headers = getHeaders();
-        String url = supabaseUrl + "/rest/v1/transformers?select=*";
-        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    public ResponseEntity<?> getAll(
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) throws IOException {
+        if (limit == null && after == null) {
+            return supabaseClient.stream("transformers?select=*", acceptEncoding);
+        }
+        try {
+            return supabaseClient.getPage("transformers", null, Keyset.TRANSFORMERS, limit, after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("{\"error\":\"" + e.getMessage() + "\"}");
+        }
     }
 
     // Create transformer - accepts both JSON and multipart/form-data
@@ -65,8 +73,7 @@ public class TransformerController {
                 String contentType = request.getContentType();
                 if (contentType != null && contentType.contains("application/json")) {
                     // Read JSON body
-                    ObjectMapper mapper = new ObjectMapper();
-                    Map<String, Object> jsonBody = mapper.readValue(request.getInputStream(), new TypeReference<Map<String, Object>>() {});
+                    Map<String, Object> jsonBody = Json.ROW.readValue(request.getInputStream());
                     poleNumber = (String) jsonBody.get("poleNumber");
                     region = (String) jsonBody.get("region");
                     type = (String) jsonBody.get("type");
@@ -113,35 +120,44 @@ public class TransformerController {
 
     // Get transformer by ID
     @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getById(@PathVariable String id) {
-        HttpHeaders headers = getHeaders();
-
-        // 1. Get transformer by ID
-        String transformerUrl = supabaseUrl + "/rest/v1/transformers?id=eq." + id + "&select=*";
-        ResponseEntity<String> transformerResponse = restTemplate.exchange(transformerUrl, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    public ResponseEntity<Map<String, Object>> getById(@PathVariable Long id) {
+        // One round trip with the inspections embedded (one-to-many, so "inspections" is already the array)
+        ResponseEntity<String> embeddedResponse = supabaseClient.getEmbedded("transformers", "inspections(*)", "id=eq." + id);
+        if (embeddedResponse != null) {
+            List<Map<String, Object>> rows;
+            try {
+                rows = Json.ROWS.readValue(embeddedResponse.getBody());
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+            }
+            if (rows.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+            }
+            Map<String, Object> result = new HashMap<>(rows.get(0));
+            if (!(result.get("inspections") instanceof List)) {
+                result.put("inspections", new ArrayList<>());
+            }
+            return ResponseEntity.ok(result);
+        }
 
-        // Parse transformer JSON (assume single result)
-        String transformerJson = transformerResponse.getBody();
-        ObjectMapper mapper = new ObjectMapper();
-        List<Map<String, Object>> transformerList;
+        // Without a foreign key: 1. Get transformer by ID (cached)
+        Map<String, Object> transformer;
         try {
-            transformerList = mapper.readValue(transformerJson, new TypeReference<List<Map<String, Object>>>() {});
+            transformer = transformerCache.getById(id);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
-        if (transformerList.isEmpty()) {
+        if (transformer == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
         }
-        Map<String, Object> transformer = transformerList.get(0);
 
         // 2. Get inspections by transformerNumber
         String transformerNumber = (String) transformer.get("transformerNumber");
-        String inspectionsUrl = supabaseUrl + "/rest/v1/inspections?transformerNumber=eq." + transformerNumber + "&select=*";
-        ResponseEntity<String> inspectionsResponse = restTemplate.exchange(inspectionsUrl, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        ResponseEntity<String> inspectionsResponse = supabaseClient.get("inspections?transformerNumber=eq." + transformerNumber + "&select=*");
 
         List<Map<String, Object>> inspectionsList;
         try {
-            inspectionsList = mapper.readValue(inspectionsResponse.getBody(), new TypeReference<List<Map<String, Object>>>() {});
+            inspectionsList = Json.ROWS.readValue(inspectionsResponse.getBody());
         } catch (Exception e) {
             inspectionsList = new ArrayList<>();
         }
@@ -152,14 +168,4 @@ public class TransformerController {
 
         return ResponseEntity.ok(result);
     }
-
-    private HttpHeaders getHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("apikey", supabaseApiKey);
-        headers.set("Authorization", "Bearer " + supabaseApiKey);
-//        headers.set("Cache-Control", "no-cache, no-store, must-revalidate");
-//        headers.set("Pragma", "no-cache");
-//        headers.set("Expires", "0");
-        return headers;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.example.transformer_app.dto;
+
+import java.time.Instant;
+
+/**
+ * State of one asynchronous image analysis, as returned by GET /api/jobs/{id}.
+ */
+public class AnalysisJob {
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private final String id;
+    private final Long iid;
+    private final String imageUrl;
+    private final Instant createdAt = Instant.now();
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant finishedAt;
+    private volatile Integer detections;
+    private volatile String error;
+
+    public AnalysisJob(String id, Long iid, String imageUrl) {
+        this.id = id;
+        this.iid = iid;
+        this.imageUrl = imageUrl;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getIid() {
+        return iid;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public Integer getDetections() {
+        return detections;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    public void markRunning() {
+        this.status = Status.RUNNING;
+    }
+
+    public void markSucceeded(int detections) {
+        this.detections = detections;
+        this.finishedAt = Instant.now();
+        this.status = Status.SUCCEEDED;
+    }
+
+    public void markFailed(String error) {
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.status = Status.FAILED;
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.transformer_app.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming (de)serializers of Detection and AnomalyLogEntry. They keep the JSON the anomalies column,
+ * the anomaly_log table and the frontend already use, while reading boxes straight into double[]
+ * without going through a Map or a List of Doubles.
+ */
+public final class AnomalyJson {
+
+    private AnomalyJson() {
+    }
+
+    public static class DetectionSerializer extends StdSerializer<Detection> {
+
+        public DetectionSerializer() {
+            super(Detection.class);
+        }
+
+        @Override
+        public void serialize(Detection detection, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(detection);
+            gen.writeStringField("id", detection.getId());
+            gen.writeFieldName("box");
+            writeBox(gen, detection.getBox(), false);
+            gen.writeStringField("class", detection.getClassName());
+            if (detection.hasClassNameKey()) {
+                gen.writeStringField("className", detection.getClassName());
+            }
+            gen.writeNumberField("confidence", detection.getConfidence());
+            gen.writeStringField("madeBy", detection.getMadeBy() != null ? detection.getMadeBy().getValue() : null);
+            if (detection.getOtherFields() != null) {
+                for (Map.Entry<String, Object> field : detection.getOtherFields().entrySet()) {
+                    gen.writeFieldName(field.getKey());
+                    provider.defaultSerializeValue(field.getValue(), gen);
+                }
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    public static class DetectionDeserializer extends StdDeserializer<Detection> {
+
+        public DetectionDeserializer() {
+            super(Detection.class);
+        }
+
+        @Override
+        public Detection deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonToken token = startObject(p, ctxt, Detection.class);
+            Detection detection = new Detection();
+            String classNameValue = null;
+            for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+                String name = p.currentName();
+                p.nextToken();
+                switch (name) {
+                    case "id" -> detection.setId(readString(p));
+                    case "box" -> detection.setBox(readBox(p, ctxt));
+                    case "class" -> detection.setClassName(readString(p));
+                    case "className" -> {
+                        classNameValue = readString(p);
+                        detection.setClassNameKey(true);
+                    }
+                    case "confidence" -> detection.setConfidence(readDouble(p));
+                    case "madeBy" -> detection.setMadeBy(MadeBy.fromValue(readString(p)));
+                    default -> detection.putOtherField(name, ctxt.readValue(p, Object.class));
+                }
+            }
+            // "class" wins when both keys are present
+            if (detection.getClassName() == null) {
+                detection.setClassName(classNameValue);
+            }
+            return detection;
+        }
+    }
+
+    /**
+     * Reads the anomalies column, which older rows may hold as a JSON string instead of an array.
+     */
+    public static class DetectionListDeserializer extends StdDeserializer<List<Detection>> {
+
+        private final DetectionDeserializer detectionDeserializer = new DetectionDeserializer();
+
+        public DetectionListDeserializer() {
+            super(List.class);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<Detection> deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() == JsonToken.VALUE_STRING) {
+                String json = p.getText();
+                if (json.isBlank()) {
+                    return new ArrayList<>();
+                }
+                try (JsonParser nested = p.getCodec().getFactory().createParser(json)) {
+                    nested.setCodec(p.getCodec());
+                    nested.nextToken();
+                    return deserialize(nested, ctxt);
+                }
+            }
+            if (p.currentToken() != JsonToken.START_ARRAY) {
+                return (List<Detection>) ctxt.handleUnexpectedToken(List.class, p);
+            }
+            List<Detection> detections = new ArrayList<>();
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                if (p.currentToken() != JsonToken.VALUE_NULL) {
+                    detections.add(detectionDeserializer.deserialize(p, ctxt));
+                }
+            }
+            return detections;
+        }
+
+        @Override
+        public List<Detection> getNullValue(DeserializationContext ctxt) {
+            return new ArrayList<>();
+        }
+    }
+
+    public static class LogEntrySerializer extends StdSerializer<AnomalyLogEntry> {
+
+        public LogEntrySerializer() {
+            super(AnomalyLogEntry.class);
+        }
+
+        // Missing values are written as empty values rather than null, like the map-based entries were
+        @Override
+        public void serialize(AnomalyLogEntry entry, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(entry);
+            gen.writeStringField("id", entry.getId() != null ? entry.getId() : "");
+            gen.writeFieldName("box");
+            writeBox(gen, entry.getBox(), true);
+            gen.writeNumberField("confidence", entry.getConfidence());
+            gen.writeStringField("class", entry.getClassName() != null ? entry.getClassName() : "");
+            gen.writeStringField("timestamp", entry.getTimestamp());
+            gen.writeStringField("madeBy", entry.getMadeBy() != null ? entry.getMadeBy().getValue() : "");
+            gen.writeStringField("action", entry.getAction() != null ? entry.getAction().getValue() : "");
+            if (entry.getIid() != null) {
+                gen.writeNumberField("iid", entry.getIid());
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    public static class LogEntryDeserializer extends StdDeserializer<AnomalyLogEntry> {
+
+        public LogEntryDeserializer() {
+            super(AnomalyLogEntry.class);
+        }
+
+        @Override
+        public AnomalyLogEntry deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonToken token = startObject(p, ctxt, AnomalyLogEntry.class);
+            AnomalyLogEntry entry = new AnomalyLogEntry();
+            for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+                String name = p.currentName();
+                p.nextToken();
+                switch (name) {
+                    case "iid" -> entry.setIid(p.currentToken() == JsonToken.VALUE_NULL ? null : p.getValueAsLong());
+                    case "id" -> entry.setId(readString(p));
+                    case "box" -> entry.setBox(readBox(p, ctxt));
+                    case "confidence" -> entry.setConfidence(readDouble(p));
+                    case "class", "className" -> entry.setClassName(readString(p));
+                    case "timestamp" -> entry.setTimestamp(readString(p));
+                    case "madeBy" -> entry.setMadeBy(MadeBy.fromValue(readString(p)));
+                    case "action" -> entry.setAction(AnomalyLogEntry.Action.fromValue(readString(p)));
+                    default -> p.skipChildren(); // e.g. lid
+                }
+            }
+            return entry;
+        }
+    }
+
+    // Leaves the parser on the first field name (or END_OBJECT) of an object
+    private static JsonToken startObject(JsonParser p, DeserializationContext ctxt, Class<?> type) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = p.nextToken();
+        } else if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+            ctxt.handleUnexpectedToken(type, p);
+        }
+        return token;
+    }
+
+    // Scalars as text; a nested object or array where a scalar belongs is skipped and read as null
+    private static String readString(JsonParser p) throws IOException {
+        if (p.currentToken().isStructStart()) {
+            p.skipChildren();
+            return null;
+        }
+        return p.getValueAsString();
+    }
+
+    private static double readDouble(JsonParser p) throws IOException {
+        if (p.currentToken().isStructStart()) {
+            p.skipChildren();
+            return 0.0;
+        }
+        return p.getValueAsDouble();
+    }
+
+    private static void writeBox(JsonGenerator gen, double[] box, boolean emptyIfNull) throws IOException {
+        if (box == null) {
+            if (emptyIfNull) {
+                gen.writeStartArray();
+                gen.writeEndArray();
+            } else {
+                gen.writeNull();
+            }
+            return;
+        }
+        gen.writeArray(box, 0, box.length);
+    }
+
+    private static double[] readBox(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            return (double[]) ctxt.handleUnexpectedToken(double[].class, p);
+        }
+        double[] box = new double[4];
+        int size = 0;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (size == box.length) {
+                box = Arrays.copyOf(box, size * 2);
+            }
+            box[size++] = readDouble(p);
+        }
+        return size == box.length ? box : Arrays.copyOf(box, size);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.transformer_app.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.Instant;
+
+/**
+ * One add/edit/delete event of an anomaly, as stored in the anomaly_log table.
+ * JSON shape: {"id", "box", "confidence", "class", "timestamp", "madeBy", "action"} plus "iid" once it is set.
+ */
+@JsonSerialize(using = AnomalyJson.LogEntrySerializer.class)
+@JsonDeserialize(using = AnomalyJson.LogEntryDeserializer.class)
+public class AnomalyLogEntry {
+
+    public enum Action {
+        ADD, EDIT, DELETE;
+
+        public String getValue() {
+            return name().toLowerCase();
+        }
+
+        public static Action fromValue(String value) {
+            for (Action action : values()) {
+                if (action.getValue().equalsIgnoreCase(value)) {
+                    return action;
+                }
+            }
+            return null;
+        }
+    }
+
+    private Long iid;
+    private String id;
+    private double[] box;
+    private double confidence;
+    private String className;
+    private String timestamp; // ISO-8601
+    private MadeBy madeBy;
+    private Action action;
+
+    public AnomalyLogEntry() {
+    }
+
+    /**
+     * Log entry for an action on an anomaly, timestamped now.
+     */
+    public static AnomalyLogEntry of(Detection anomaly, MadeBy madeBy, Action action) {
+        AnomalyLogEntry entry = new AnomalyLogEntry();
+        entry.id = anomaly.getId();
+        entry.box = anomaly.getBox();
+        entry.confidence = anomaly.getConfidence();
+        entry.className = anomaly.getClassName();
+        entry.timestamp = Instant.now().toString();
+        entry.madeBy = madeBy;
+        entry.action = action;
+        return entry;
+    }
+
+    public Long getIid() {
+        return iid;
+    }
+
+    public void setIid(Long iid) {
+        this.iid = iid;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public double[] getBox() {
+        return box;
+    }
+
+    public void setBox(double... box) {
+        this.box = box;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public void setConfidence(double confidence) {
+        this.confidence = confidence;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public void setClassName(String className) {
+        this.className = className;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(String timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public MadeBy getMadeBy() {
+        return madeBy;
+    }
+
+    public void setMadeBy(MadeBy madeBy) {
+        this.madeBy = madeBy;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.transformer_app.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The columns of an inspection row an anomaly read or mutation needs (select=iid,version,refImage,anomalies),
+ * with the anomalies parsed straight into Detections.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AnomalySnapshot {
+    private Long iid;
+    private Long version;
+    private String refImage;
+
+    @JsonDeserialize(using = AnomalyJson.DetectionListDeserializer.class)
+    private List<Detection> anomalies = new ArrayList<>();
+
+    public Long getIid() {
+        return iid;
+    }
+
+    public void setIid(Long iid) {
+        this.iid = iid;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public String getRefImage() {
+        return refImage;
+    }
+
+    public void setRefImage(String refImage) {
+        this.refImage = refImage;
+    }
+
+    public List<Detection> getAnomalies() {
+        return anomalies;
+    }
+
+    public void setAnomalies(List<Detection> anomalies) {
+        this.anomalies = anomalies;
+    }
+}
@@ -1,18 +1,30 @@
 package com.example.transformer_app.dto;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
-import java.util.List;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One anomaly of an inspection, either found by the detector or drawn by a user.
+ * The box is a primitive array (x1, y1, x2, y2 as the detector returns it, then x_center, y_center, width, height
+ * once converted) so an inspection with many anomalies does not allocate a boxed Double per coordinate.
+ * JSON shape: {"id", "box", "class", "confidence", "madeBy"} (see AnomalyJson).
+ */
+@JsonSerialize(using = AnomalyJson.DetectionSerializer.class)
+@JsonDeserialize(using = AnomalyJson.DetectionDeserializer.class)
 public class Detection {
     private String id; // Unique identifier for this detection
-    private List<Double> box;
-
-    @JsonProperty("class")
+    private double[] box;
     private String className;
-
     private double confidence;
+    private MadeBy madeBy; // tracks how this anomaly was created
 
-    private String madeBy; // "AI" or "User" - tracks how this anomaly was created
+    // Clients have sent the class as "className"; such anomalies are written back with that key too
+    private boolean classNameKey;
+    // Fields the model does not know (extra attributes set by the frontend), kept so they survive a round trip
+    private Map<String, Object> otherFields;
 
     public String getId() {
         return id;
@@ -22,19 +34,19 @@ public class Detection {
         this.id = id;
     }
 
-    public String getMadeBy() {
+    public MadeBy getMadeBy() {
         return madeBy;
     }
 
-    public void setMadeBy(String madeBy) {
+    public void setMadeBy(MadeBy madeBy) {
         this.madeBy = madeBy;
     }
 
-    public List<Double> getBox() {
+    public double[] getBox() {
         return box;
     }
 
-    public void setBox(List<Double> box) {
+    public void setBox(double... box) {
         this.box = box;
     }
 
@@ -53,4 +65,35 @@ public class Detection {
     public void setConfidence(double confidence) {
         this.confidence = confidence;
     }
+
+    boolean hasClassNameKey() {
+        return classNameKey;
+    }
+
+    void setClassNameKey(boolean classNameKey) {
+        this.classNameKey = classNameKey;
+    }
+
+    Map<String, Object> getOtherFields() {
+        return otherFields;
+    }
+
+    void putOtherField(String name, Object value) {
+        if (otherFields == null) {
+            otherFields = new LinkedHashMap<>();
+        }
+        otherFields.put(name, value);
+    }
+
+    public Detection copy() {
+        Detection copy = new Detection();
+        copy.id = id;
+        copy.box = box != null ? box.clone() : null;
+        copy.className = className;
+        copy.confidence = confidence;
+        copy.madeBy = madeBy;
+        copy.classNameKey = classNameKey;
+        copy.otherFields = otherFields != null ? new LinkedHashMap<>(otherFields) : null;
+        return copy;
+    }
 }
@@ -1,12 +1,14 @@
 package com.example.transformer_app.dto;
 
 import java.util.List;
-import java.util.Map;
 
 public class ImageAnalysisResult {
     private String imageUrl;
     private List<Detection> detections;
-    private List<Map<String, Object>> anomaliesLog;
+    private List<AnomalyLogEntry> anomaliesLog;
+    private long uploadMillis;    // time spent storing the image
+    private long inferenceMillis; // time spent in the detection Lambda
+    private boolean analysisPending; // the detector was unavailable (circuit open), so no detections yet
 
     public ImageAnalysisResult() {
     }
@@ -16,7 +18,7 @@ public class ImageAnalysisResult {
         this.detections = detections;
     }
 
-    public ImageAnalysisResult(String imageUrl, List<Detection> detections, List<Map<String, Object>> anomaliesLog) {
+    public ImageAnalysisResult(String imageUrl, List<Detection> detections, List<AnomalyLogEntry> anomaliesLog) {
         this.imageUrl = imageUrl;
         this.detections = detections;
         this.anomaliesLog = anomaliesLog;
@@ -30,7 +32,7 @@ public class ImageAnalysisResult {
         return detections;
     }
 
-    public List<Map<String, Object>> getAnomaliesLog() {
+    public List<AnomalyLogEntry> getAnomaliesLog() {
         return anomaliesLog;
     }
 
@@ -42,7 +44,31 @@ public class ImageAnalysisResult {
         this.detections = detections;
     }
 
-    public void setAnomaliesLog(List<Map<String, Object>> anomaliesLog) {
+    public void setAnomaliesLog(List<AnomalyLogEntry> anomaliesLog) {
         this.anomaliesLog = anomaliesLog;
     }
+
+    public long getUploadMillis() {
+        return uploadMillis;
+    }
+
+    public void setUploadMillis(long uploadMillis) {
+        this.uploadMillis = uploadMillis;
+    }
+
+    public long getInferenceMillis() {
+        return inferenceMillis;
+    }
+
+    public void setInferenceMillis(long inferenceMillis) {
+        this.inferenceMillis = inferenceMillis;
+    }
+
+    public boolean isAnalysisPending() {
+        return analysisPending;
+    }
+
+    public void setAnalysisPending(boolean analysisPending) {
+        this.analysisPending = analysisPending;
+    }
 }
@@ -0,0 +1,32 @@
+package com.example.transformer_app.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Who created an anomaly: the detector or a user editing the inspection. Serialized as "AI" / "User".
+ */
+public enum MadeBy {
+    AI("AI"),
+    USER("User");
+
+    private final String value;
+
+    MadeBy(String value) {
+        this.value = value;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    // Case-insensitive; anything the detector did not produce counts as a user edit
+    @JsonCreator
+    public static MadeBy fromValue(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return AI.value.equalsIgnoreCase(value) ? AI : USER;
+    }
+}
@@ -1,8 +1,8 @@
 package com.example.transformer_app.model;
 
+import com.example.transformer_app.dto.AnomalyLogEntry;
 import com.example.transformer_app.dto.Detection;
 import java.util.List;
-import java.util.Map;
 
 public class Inspection {
     private String iid;
@@ -14,7 +14,7 @@ public class Inspection {
     private String inspector;
     private String refImage; // URL to image in Supabase Storage
     private List<Detection> anomalies; // List of detected anomalies
-    private List<Map<String, Object>> anomaliesLog; // Log of anomaly detections with metadata
+    private List<AnomalyLogEntry> anomaliesLog; // Log of anomaly detections with metadata
 
     // Getters & Setters
     public String getIid() { return iid; }
@@ -44,6 +44,6 @@ public class Inspection {
     public List<Detection> getAnomalies() { return anomalies; }
     public void setAnomalies(List<Detection> anomalies) { this.anomalies = anomalies; }
 
-    public List<Map<String, Object>> getAnomaliesLog() { return anomaliesLog; }
-    public void setAnomaliesLog(List<Map<String, Object>> anomaliesLog) { this.anomaliesLog = anomaliesLog; }
+    public List<AnomalyLogEntry> getAnomaliesLog() { return anomaliesLog; }
+    public void setAnomaliesLog(List<AnomalyLogEntry> anomaliesLog) { this.anomaliesLog = anomaliesLog; }
 }
\ No newline at end of file
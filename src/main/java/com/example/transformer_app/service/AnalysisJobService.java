@@ -0,0 +1,173 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.client.InferenceUnavailableException;
+import com.example.transformer_app.dto.AnalysisJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Asynchronous image analysis: the request stores the image and the inspection row, then returns a job id
+ * while a bounded worker pool calls the Lambda and writes the anomalies.
+ * Admission is limited to analysis.jobs.max-pending queued + running jobs; beyond that requests are rejected
+ * up front (JobQueueFullException) before anything is stored.
+ * Job state is kept in memory for analysis.jobs.retention-ms after a job finishes.
+ * While the detector is unavailable a job waits and tries again, up to analysis.jobs.unavailable-retries times.
+ */
+@Service
+public class AnalysisJobService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AnalysisJobService.class);
+
+    private final InspectionService inspectionService;
+    private final Executor jobExecutor;
+    private final int maxPending;
+    private final Semaphore pending;
+    private final Duration retention;
+    private final int unavailableRetries;
+    private final long unavailableRetryDelayMs;
+
+    private final Map<String, AnalysisJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AnalysisJobService(
+            InspectionService inspectionService,
+            @Qualifier("jobExecutor") Executor jobExecutor,
+            @Value("${analysis.jobs.max-pending:100}") int maxPending,
+            @Value("${analysis.jobs.retention-ms:3600000}") long retentionMs,
+            @Value("${analysis.jobs.unavailable-retries:5}") int unavailableRetries,
+            @Value("${analysis.jobs.unavailable-retry-delay-ms:30000}") long unavailableRetryDelayMs
+    ) {
+        this.inspectionService = inspectionService;
+        this.jobExecutor = jobExecutor;
+        this.maxPending = maxPending;
+        this.pending = new Semaphore(maxPending);
+        this.retention = Duration.ofMillis(retentionMs);
+        this.unavailableRetries = unavailableRetries;
+        this.unavailableRetryDelayMs = unavailableRetryDelayMs;
+    }
+
+    // Creates the inspection with the stored image and queues its analysis
+    public AnalysisJob submitCreateInspection(
+            String transformerNumber,
+            String inspectionNumber,
+            String inspectionDate,
+            String maintainanceDate,
+            String status,
+            String inspector,
+            MultipartFile refImage
+    ) throws IOException {
+        acquire();
+        try {
+            byte[] bytes = refImage.getBytes();
+            String imageUrl = inspectionService.uploadImage(bytes, refImage.getOriginalFilename(), refImage.getContentType());
+            Long iid = inspectionService.createInspectionPendingAnalysis(
+                    transformerNumber, inspectionNumber, inspectionDate, maintainanceDate, status, inspector, imageUrl);
+            return enqueue(iid, imageUrl, bytes, inspectionService.resolveThreshold(null));
+        } catch (IOException | RuntimeException e) {
+            pending.release();
+            throw e;
+        }
+    }
+
+    // Replaces the inspection's reference image and queues its analysis
+    public AnalysisJob submitRefImage(Long iid, MultipartFile refImage, Double threshold) throws IOException {
+        acquire();
+        try {
+            byte[] bytes = refImage.getBytes();
+            String imageUrl = inspectionService.uploadImage(bytes, refImage.getOriginalFilename(), refImage.getContentType());
+            inspectionService.replaceRefImagePendingAnalysis(iid, imageUrl);
+            return enqueue(iid, imageUrl, bytes, inspectionService.resolveThreshold(threshold));
+        } catch (IOException | RuntimeException e) {
+            pending.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Queues the analysis of an image already stored as the inspection's reference image, for uploads the
+     * synchronous path could not analyse because the detector was unavailable.
+     * @throws JobQueueFullException if analysis.jobs.max-pending jobs are already queued or running
+     */
+    public AnalysisJob submitAnalysis(Long iid, String imageUrl, byte[] bytes, double threshold) {
+        acquire();
+        try {
+            return enqueue(iid, imageUrl, bytes, threshold);
+        } catch (RuntimeException e) {
+            pending.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the job, or null if it is unknown or has expired
+     */
+    public AnalysisJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    // Admitted jobs that have not finished yet
+    public int getPendingJobs() {
+        return maxPending - pending.availablePermits();
+    }
+
+    private void acquire() {
+        purgeExpired();
+        if (!pending.tryAcquire()) {
+            throw new JobQueueFullException(maxPending);
+        }
+    }
+
+    // Called with a permit held; the worker releases it when the job finishes
+    private AnalysisJob enqueue(Long iid, String imageUrl, byte[] bytes, double threshold) {
+        AnalysisJob job = new AnalysisJob(UUID.randomUUID().toString(), iid, imageUrl);
+        jobs.put(job.getId(), job);
+        jobExecutor.execute(() -> {
+            try {
+                job.markRunning();
+                job.markSucceeded(applyAnalysis(iid, imageUrl, bytes, threshold));
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                LOG.warn("Analysis job {} for inspection {} failed", job.getId(), iid, e);
+                job.markFailed(e.getMessage());
+            } finally {
+                pending.release();
+            }
+        });
+        return job;
+    }
+
+    // Holds the worker while the detector is unavailable; the admission limit keeps the number of waiting jobs bounded
+    private int applyAnalysis(Long iid, String imageUrl, byte[] bytes, double threshold) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return inspectionService.applyAnalysis(iid, imageUrl, bytes, threshold);
+            } catch (InferenceUnavailableException e) {
+                if (attempt >= unavailableRetries) {
+                    throw e;
+                }
+                Thread.sleep(unavailableRetryDelayMs);
+            }
+        }
+    }
+
+    private void purgeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+}
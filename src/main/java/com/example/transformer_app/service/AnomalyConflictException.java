@@ -0,0 +1,31 @@
+package com.example.transformer_app.service;
+
+/**
+ * Thrown when an anomaly edit loses against a concurrent edit of the same inspection
+ * (HTTP 412 when the client's If-Match did not hold, otherwise 409).
+ */
+public class AnomalyConflictException extends RuntimeException {
+
+    private final String currentETag;
+    private final boolean preconditionFailed;
+
+    public AnomalyConflictException(Long iid, String currentETag, boolean preconditionFailed) {
+        super("Inspection " + iid + " was modified by another editor");
+        this.currentETag = currentETag;
+        this.preconditionFailed = preconditionFailed;
+    }
+
+    /**
+     * ETag of the version currently stored, if known.
+     */
+    public String getCurrentETag() {
+        return currentETag;
+    }
+
+    /**
+     * Whether the client sent an If-Match that no longer holds, rather than its merge retries running out.
+     */
+    public boolean isPreconditionFailed() {
+        return preconditionFailed;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.client.Keyset;
+import com.example.transformer_app.client.SupabaseClient;
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.dto.AnomalyLogEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only store for anomaly log events. Each add/edit/delete inserts one row into the anomaly_log table
+ * instead of rewriting the inspection's whole anomaliesLog array.
+ *
+ * The table and its (iid, lid) index are created by db/anomaly_log.sql.
+ *
+ * Entries written before the table existed still sit in inspections.anomaliesLog. Until db/anomaly_log_backfill.sql
+ * has moved them over, getLog serves them ahead of the table rows (turn off with anomalies.legacy-log.merge=false).
+ *
+ * Entries are inserted after the inspection PATCH they describe, in a separate request (PostgREST has no
+ * transaction across the two). InspectionService logs a failed insert and still reports the change, which has
+ * been stored; the log is then missing those entries.
+ */
+@Service
+public class AnomalyLogService {
+
+    private static final String TABLE = "anomaly_log";
+
+    // Same fields as the old anomaliesLog entries, plus lid which the cursor is built from
+    private static final String LOG_COLUMNS = "lid,id,box,confidence,class,timestamp,madeBy,action";
+
+    private final SupabaseClient supabaseClient;
+
+    @Value("${anomalies.legacy-log.merge:true}")
+    private boolean mergeLegacyLog = true;
+
+    @Autowired
+    public AnomalyLogService(SupabaseClient supabaseClient) {
+        this.supabaseClient = supabaseClient;
+    }
+
+    /**
+     * Appends log entries for an inspection in a single insert.
+     */
+    public void append(Long iid, List<AnomalyLogEntry> entries) {
+        if (iid == null || entries == null || entries.isEmpty()) {
+            return;
+        }
+        for (AnomalyLogEntry entry : entries) {
+            entry.setIid(iid);
+        }
+        supabaseClient.insert(TABLE, entries);
+    }
+
+    /**
+     * Appends the log entries of several inspections in a single insert.
+     */
+    public void appendAll(Map<Long, List<AnomalyLogEntry>> entriesByIid) {
+        List<AnomalyLogEntry> rows = new ArrayList<>();
+        for (Map.Entry<Long, List<AnomalyLogEntry>> entries : entriesByIid.entrySet()) {
+            if (entries.getKey() == null || entries.getValue() == null) {
+                continue;
+            }
+            for (AnomalyLogEntry entry : entries.getValue()) {
+                entry.setIid(entries.getKey());
+                rows.add(entry);
+            }
+        }
+        if (!rows.isEmpty()) {
+            supabaseClient.insert(TABLE, rows);
+        }
+    }
+
+    /**
+     * One page of an inspection's log, oldest first.
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public ResponseEntity<String> getLog(Long iid, Integer limit, String after) throws IOException {
+        ResponseEntity<String> page = supabaseClient.getPage(TABLE, LOG_COLUMNS, "iid=eq." + iid, Keyset.ANOMALY_LOG, limit, after);
+        if (!mergeLegacyLog || after != null) {
+            return page;
+        }
+
+        // Legacy entries predate every table row, so they all go on the first page
+        List<Map<String, Object>> legacy = getLegacyLog(iid);
+        if (legacy.isEmpty()) {
+            return page;
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(legacy);
+        rows.addAll(Json.ROWS.readValue(page.getBody() != null ? page.getBody() : "[]"));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(page.getHeaders());
+        String total = headers.getFirst("X-Total-Count");
+        if (total != null) {
+            headers.set("X-Total-Count", String.valueOf(Long.parseLong(total) + legacy.size()));
+        }
+        return new ResponseEntity<>(Json.WRITER.writeValueAsString(rows), headers, page.getStatusCode());
+    }
+
+    // Entries still in the inspection's old anomaliesLog column, oldest first
+    private List<Map<String, Object>> getLegacyLog(Long iid) throws IOException {
+        ResponseEntity<String> response = supabaseClient.get("inspections?iid=eq." + iid + "&select=anomaliesLog&limit=1");
+        List<Map<String, Object>> rows = Json.ROWS.readValue(response.getBody());
+        if (rows.isEmpty() || !(rows.get(0).get("anomaliesLog") instanceof List<?> entries)) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> legacy = new ArrayList<>(entries.size());
+        for (Object entry : entries) {
+            if (entry instanceof Map<?, ?> map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> fields = (Map<String, Object>) map;
+                legacy.add(fields);
+            }
+        }
+        return legacy;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.client.Letterbox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Shrinks an image to the detector's input before it is sent for inference: decode (subsampled when much larger
+ * than needed), letterbox to inference.preprocess.size and re-encode. The detector resizes internally anyway,
+ * so this only saves bandwidth and detector memory. Boxes the detector returns are in the letterboxed image's
+ * coordinates; map them back with the returned Letterbox.
+ * Runs on the bounded preprocessExecutor so decoding never uses more than its CPU share.
+ * Images that are already small enough, can't be decoded or wouldn't get smaller are sent as they are.
+ */
+@Component
+public class ImagePreprocessor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+    private final boolean enabled;
+    private final int inputSize;
+    private final String format;
+    private final float jpegQuality;
+    private final Executor executor;
+
+    @Autowired
+    public ImagePreprocessor(
+            @Value("${inference.preprocess.enabled:true}") boolean enabled,
+            @Value("${inference.preprocess.size:640}") int inputSize,
+            @Value("${inference.preprocess.format:jpeg}") String format,
+            @Value("${inference.preprocess.jpeg-quality:0.9}") float jpegQuality,
+            @Qualifier("preprocessExecutor") Executor executor
+    ) {
+        this.enabled = enabled;
+        this.inputSize = inputSize;
+        this.format = format;
+        this.jpegQuality = jpegQuality;
+        this.executor = executor;
+    }
+
+    /**
+     * The bytes to send to the detector, and the letterbox their coordinates are in (null when the original is sent).
+     */
+    public static final class Prepared {
+        private final byte[] bytes;
+        private final Letterbox letterbox;
+
+        Prepared(byte[] bytes, Letterbox letterbox) {
+            this.bytes = bytes;
+            this.letterbox = letterbox;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public Letterbox getLetterbox() {
+            return letterbox;
+        }
+    }
+
+    public Prepared prepare(byte[] original) throws IOException {
+        if (!enabled) {
+            return new Prepared(original, null);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return prepareNow(original);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while pre-processing image");
+        } catch (ExecutionException e) {
+            // A broken image is the detector's problem to report, as before
+            LOG.warn("Image pre-processing failed, sending the original: {}", e.getCause().getMessage());
+            return new Prepared(original, null);
+        }
+    }
+
+    // The actual work, on the calling thread
+    Prepared prepareNow(byte[] original) throws IOException {
+        int[] size = ImageCodec.readSize(original);
+        if (size == null || Math.max(size[0], size[1]) <= inputSize) {
+            return new Prepared(original, null);
+        }
+
+        BufferedImage source = ImageCodec.decode(original, inputSize);
+        Letterbox letterbox = new Letterbox(size[0], size[1], inputSize);
+        byte[] encoded = ImageCodec.encode(letterbox.draw(source), format, jpegQuality);
+        if (encoded.length >= original.length) {
+            return new Prepared(original, null);
+        }
+        return new Prepared(encoded, letterbox);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.client.SupabaseClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thumbnail and medium-size JPEG copies of stored images, for list and card views.
+ * A variant lives next to its original as {name}_thumb.jpg / {name}_medium.jpg. The images are generated on the
+ * bounded variantExecutor after the request returns, so rows written before that get the original's URL in their
+ * variant columns (refImageThumbnail, refImageMedium, baselineImageThumbnail, baselineImageMedium); once both
+ * variants are uploaded, the rows still showing that original are pointed at them. A variant URL in a row
+ * therefore always resolves. If the queue is full or generation fails, the rows keep the original's URL.
+ * Only the URL is queued: the task reads the original back from storage, so waiting tasks hold no image bytes.
+ * Cached transformer rows pick up the variant URLs when their TransformerCache entry expires.
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ImageVariantService.class);
+
+    public static final String THUMBNAIL = "thumb";
+    public static final String MEDIUM = "medium";
+
+    private static final String PUBLIC_PATH = "/storage/v1/object/public/";
+    private static final int MAX_GENERATED = 10_000;
+
+    private final SupabaseClient supabaseClient;
+    private final Executor variantExecutor;
+    private final boolean enabled;
+    private final int thumbnailSize;
+    private final int mediumSize;
+    private final float jpegQuality;
+
+    // Originals whose variants are uploaded (most recent), so rows written later get the variant URLs directly
+    private final Set<String> generated = Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_GENERATED;
+        }
+    });
+
+    @Autowired
+    public ImageVariantService(
+            SupabaseClient supabaseClient,
+            @Qualifier("variantExecutor") Executor variantExecutor,
+            @Value("${images.variants.enabled:false}") boolean enabled,
+            @Value("${images.variants.thumbnail-size:256}") int thumbnailSize,
+            @Value("${images.variants.medium-size:1024}") int mediumSize,
+            @Value("${images.variants.jpeg-quality:0.85}") float jpegQuality
+    ) {
+        this.supabaseClient = supabaseClient;
+        this.variantExecutor = variantExecutor;
+        this.enabled = enabled;
+        this.thumbnailSize = thumbnailSize;
+        this.mediumSize = mediumSize;
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * Stores the original image and queues its variants; once they are uploaded, the rows of table whose column
+     * holds the original's URL get the variant URLs.
+     * @return the original's public URL
+     */
+    public String store(String table, String column, String folder, byte[] bytes, String originalFileName,
+                        String contentType) throws IOException {
+        String url = supabaseClient.storeImage(folder, bytes, originalFileName, contentType);
+        if (enabled) {
+            String fileName = url.substring(url.lastIndexOf('/') + 1);
+            try {
+                variantExecutor.execute(() -> generate(table, column, folder, fileName, url));
+            } catch (TaskRejectedException | RejectedExecutionException e) {
+                LOG.warn("Variant queue full, no thumbnails for {}/{}", folder, fileName);
+            }
+        }
+        return url;
+    }
+
+    /**
+     * Sets {column}Thumbnail and {column}Medium on a row being written, next to the image URL in {column}:
+     * the variant URLs if the variants are uploaded already, else the original's URL until they are.
+     * Does nothing while variants are disabled, so the columns are only needed once they are turned on.
+     */
+    public void putVariantUrls(Map<String, Object> row, String column, String originalUrl) {
+        if (!enabled) {
+            return;
+        }
+        boolean ready;
+        synchronized (generated) {
+            ready = generated.contains(originalUrl);
+        }
+        row.put(column + "Thumbnail", ready ? variantUrl(originalUrl, THUMBNAIL) : ownUrl(originalUrl));
+        row.put(column + "Medium", ready ? variantUrl(originalUrl, MEDIUM) : ownUrl(originalUrl));
+    }
+
+    /**
+     * @return the URL of a variant of an image stored by this service, or null for no image / a foreign URL
+     */
+    public String variantUrl(String originalUrl, String variant) {
+        if (originalUrl == null || !originalUrl.contains(PUBLIC_PATH)) {
+            return null;
+        }
+        int nameStart = originalUrl.lastIndexOf('/') + 1;
+        return originalUrl.substring(0, nameStart) + variantName(originalUrl.substring(nameStart), variant);
+    }
+
+    // The original URL of an image stored by this service, or null for no image / a foreign URL
+    private static String ownUrl(String originalUrl) {
+        return originalUrl != null && originalUrl.contains(PUBLIC_PATH) ? originalUrl : null;
+    }
+
+    private static String variantName(String fileName, String variant) {
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return baseName + "_" + variant + ".jpg";
+    }
+
+    private void generate(String table, String column, String folder, String fileName, String url) {
+        try {
+            // Content-addressed originals are often re-uploads whose variants exist already
+            if (!supabaseClient.objectExists(folder, variantName(fileName, THUMBNAIL))
+                    || !supabaseClient.objectExists(folder, variantName(fileName, MEDIUM))) {
+                BufferedImage source = ImageCodec.decode(supabaseClient.getObject(folder, fileName), mediumSize);
+                if (source == null) {
+                    LOG.warn("Cannot decode {}/{}, no variants generated", folder, fileName);
+                    return;
+                }
+                BufferedImage medium = fit(source, mediumSize);
+                supabaseClient.putObjectIfAbsent(folder, variantName(fileName, MEDIUM),
+                        ImageCodec.encode(medium, "jpeg", jpegQuality), "image/jpeg");
+                // Scale the thumbnail from the medium image, which is cheaper and looks the same
+                supabaseClient.putObjectIfAbsent(folder, variantName(fileName, THUMBNAIL),
+                        ImageCodec.encode(fit(medium, thumbnailSize), "jpeg", jpegQuality), "image/jpeg");
+            }
+            synchronized (generated) {
+                generated.add(url);
+            }
+
+            // Rows written while the variants were missing carry the original's URL
+            Map<String, Object> variantUrls = new HashMap<>();
+            variantUrls.put(column + "Thumbnail", variantUrl(url, THUMBNAIL));
+            variantUrls.put(column + "Medium", variantUrl(url, MEDIUM));
+            supabaseClient.patch(table + "?" + column + "=eq." + url, variantUrls);
+        } catch (Exception e) {
+            LOG.warn("Variant generation failed for {}/{}", folder, fileName, e);
+        }
+    }
+
+    // Scaled down (never up) to fit in size x size, keeping the aspect ratio, as RGB for JPEG
+    private static BufferedImage fit(BufferedImage source, int size) {
+        double scale = Math.min(1.0, Math.min((double) size / source.getWidth(), (double) size / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.drawImage(source, 0, 0, width, height, null);
+        graphics.dispose();
+        return target;
+    }
+}
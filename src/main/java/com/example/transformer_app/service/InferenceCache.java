@@ -0,0 +1,202 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.dto.Detection;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of detection Lambda answers keyed by SHA-256 of the image bytes plus threshold and iou_threshold.
+ * A size-bounded in-memory LRU, optionally backed by a directory of JSON files that survives restarts.
+ * Entries hold converted boxes without per-inspection state; callers get deep copies.
+ */
+@Component
+public class InferenceCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InferenceCache.class);
+
+    private final int maxEntries;
+    private final Path diskDir; // null when the disk tier is disabled
+    private static final ObjectReader ENTRY_READER = Json.reader(Entry.class);
+
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public InferenceCache(
+            @Value("${inference.cache.max-entries:1000}") int maxEntries,
+            @Value("${inference.cache.disk-dir:}") String diskDir
+    ) throws IOException {
+        this.maxEntries = maxEntries;
+        this.diskDir = diskDir == null || diskDir.isBlank() ? null : Paths.get(diskDir);
+        if (this.diskDir != null) {
+            Files.createDirectories(this.diskDir);
+        }
+        // Access-ordered LinkedHashMap = LRU
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                boolean evict = size() > InferenceCache.this.maxEntries;
+                if (evict) {
+                    evictions.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+    }
+
+    public String key(byte[] imageBytes, double threshold, double iouThreshold) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(imageBytes);
+            return HexFormat.of().formatHex(digest) + "_" + threshold + "_" + iouThreshold;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @return the cached answer, or null on a miss
+     */
+    public Entry get(String key) {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry;
+        }
+
+        entry = readFromDisk(key);
+        if (entry != null) {
+            diskHits.incrementAndGet();
+            synchronized (entries) {
+                entries.put(key, entry);
+            }
+            return entry;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, Entry entry) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        writeToDisk(key, entry);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("diskEnabled", diskDir != null);
+        return stats;
+    }
+
+    private Entry readFromDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path file = diskDir.resolve(key + ".json");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return ENTRY_READER.readValue(file.toFile());
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable inference cache file {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        if (diskDir == null) {
+            return;
+        }
+        try {
+            // Write then rename so a concurrent reader never sees a half-written file
+            Path tmp = Files.createTempFile(diskDir, key, ".tmp");
+            Json.WRITER.writeValue(tmp.toFile(), entry);
+            Files.move(tmp, diskDir.resolve(key + ".json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not write inference cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * One Lambda answer: the optional image URL it returned and its detections (boxes already converted).
+     */
+    public static class Entry {
+        private String imageUrl;
+        private List<Detection> detections;
+
+        public Entry() {
+        }
+
+        public Entry(String imageUrl, List<Detection> detections) {
+            this.imageUrl = imageUrl;
+            this.detections = copy(detections);
+        }
+
+        public String getImageUrl() {
+            return imageUrl;
+        }
+
+        public void setImageUrl(String imageUrl) {
+            this.imageUrl = imageUrl;
+        }
+
+        public List<Detection> getDetections() {
+            return detections;
+        }
+
+        public void setDetections(List<Detection> detections) {
+            this.detections = detections;
+        }
+
+        public List<Detection> copyDetections() {
+            return copy(detections);
+        }
+
+        private static List<Detection> copy(List<Detection> source) {
+            List<Detection> result = new ArrayList<>();
+            if (source == null) {
+                return result;
+            }
+            for (Detection detection : source) {
+                result.add(detection.copy());
+            }
+            return result;
+        }
+    }
+}
@@ -1,49 +1,111 @@
 package com.example.transformer_app.service;
 
+import com.example.transformer_app.client.InferenceClient;
+import com.example.transformer_app.client.InferenceUnavailableException;
+import com.example.transformer_app.client.Letterbox;
+import com.example.transformer_app.client.SupabaseClient;
+import com.example.transformer_app.config.CancellableFuture;
+import com.example.transformer_app.config.Diagnostics;
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.dto.AnalysisJob;
+import com.example.transformer_app.dto.AnomalyLogEntry;
+import com.example.transformer_app.dto.AnomalySnapshot;
 import com.example.transformer_app.dto.Detection;
 import com.example.transformer_app.dto.ImageAnalysisResult;
+import com.example.transformer_app.dto.MadeBy;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class InspectionService {
 
-    @Value("${supabase.url}")
-    private String supabaseUrl;
-
-    @Value("${supabase.apikey}")
-    private String supabaseApiKey;
-
-    @Value("${supabase.bucket.name}")
-    private String bucketName;
+    private static final Logger LOG = LoggerFactory.getLogger(InspectionService.class);
 
     // Lambda config
-    @Value("${lambda.url:https://zbpuxumseg.execute-api.ap-southeast-1.amazonaws.com/prod/}")
-    private String lambdaUrl;
-
     @Value("${lambda.threshold:0.1}")
     private double lambdaThreshold;
 
     @Value("${lambda.iouThreshold:0.2}")
     private double lambdaIouThreshold;
 
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Deadline for the concurrent storage upload + Lambda analysis of one image
+    @Value("${lambda.analysisTimeoutMs:60000}")
+    private long analysisTimeoutMs;
+
+    // How often an anomaly edit without If-Match is re-applied after losing a race with another editor
+    @Value("${anomalies.merge-retries:3}")
+    private int anomalyMergeRetries;
+
+    // Images of one batch request that are uploaded/analysed at the same time
+    @Value("${inspections.batch.concurrency:8}")
+    private int batchConcurrency;
+
+    private final SupabaseClient supabaseClient;
+    private final AnomalyLogService anomalyLogService;
+    private final Executor analysisExecutor;
+    private final InferenceCache inferenceCache;
+    private final InferenceClient inferenceClient;
+    private final ImagePreprocessor imagePreprocessor;
+    private final ImageVariantService imageVariantService;
+
+    // Lazy: AnalysisJobService depends on this service; null outside of Spring (no re-analysis of pending images)
+    @Autowired
+    @Lazy
+    private AnalysisJobService analysisJobService;
+
+    private static final Diagnostics INSPECTION_DIAGNOSTICS = Diagnostics.forCategory("inspection");
+    private static final Diagnostics ANALYSIS_DIAGNOSTICS = Diagnostics.forCategory("analysis");
+    private static final Diagnostics ANOMALY_DIAGNOSTICS = Diagnostics.forCategory("anomaly");
+    private static final Diagnostics BOX_DIAGNOSTICS = Diagnostics.forCategory("boxes");
+    private static final DistributionSummary IMAGE_SIZE = DistributionSummary.builder("inspection.image.size")
+            .description("Size of the images sent to analysis")
+            .baseUnit("bytes")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    private static final DistributionSummary DETECTION_COUNT = DistributionSummary.builder("inspection.detections")
+            .description("Detections per analysed image")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    private static final ObjectReader SNAPSHOTS = Json.reader(new TypeReference<List<AnomalySnapshot>>() {});
 
     @Autowired
-    public InspectionService(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    public InspectionService(SupabaseClient supabaseClient, AnomalyLogService anomalyLogService,
+                             @Qualifier("analysisExecutor") Executor analysisExecutor, InferenceCache inferenceCache,
+                             InferenceClient inferenceClient, ImagePreprocessor imagePreprocessor,
+                             ImageVariantService imageVariantService) {
+        this.supabaseClient = supabaseClient;
+        this.anomalyLogService = anomalyLogService;
+        this.analysisExecutor = analysisExecutor;
+        this.inferenceCache = inferenceCache;
+        this.inferenceClient = inferenceClient;
+        this.imagePreprocessor = imagePreprocessor;
+        this.imageVariantService = imageVariantService;
     }
 
     public ResponseEntity<String> createInspection(
@@ -63,28 +125,85 @@ public class InspectionService {
 
         String imageUrl = "";
         List<Detection> detections = Collections.emptyList();
-        List<Map<String, Object>> anomaliesLog = new ArrayList<>();
+        List<AnomalyLogEntry> anomaliesLog = new ArrayList<>();
 
+        ImageAnalysisResult result = null;
         if (refImage != null && !refImage.isEmpty()) {
-            ImageAnalysisResult result = uploadImageAndAnalyze(refImage);
+            result = uploadImageAndAnalyze(refImage);
             imageUrl = result.getImageUrl();
             detections = result.getDetections();
             anomaliesLog = result.getAnomaliesLog(); // <-- Get anomaliesLog directly from result!
 
-            // Debug logging
-            System.out.println("=== DEBUG: Creating Inspection ===");
-            System.out.println("Number of detections: " + detections.size());
-            System.out.println("Number of log entries: " + anomaliesLog.size());
-            System.out.println("Detections array:");
-            System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(detections));
-            System.out.println("AnomaliesLog array:");
-            System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(anomaliesLog));
+            INSPECTION_DIAGNOSTICS.debug("create: detections={} logEntries={} detectionsPayload={}",
+                    detections.size(), anomaliesLog.size(), Diagnostics.payload(detections));
         }
 
-        HttpHeaders dbHeaders = getHeaders();
-        dbHeaders.setContentType(MediaType.APPLICATION_JSON);
-        dbHeaders.set("Prefer", "return=representation");
+        ResponseEntity<String> response = insertInspection(transformerNumber, inspectionNumber, inspectionDate,
+                maintainanceDate, status, inspector, imageUrl, detections);
+
+        Long iid = getCreatedIid(response);
+        appendLog(iid, anomaliesLog);
+
+        AnalysisJob job = result != null && result.isAnalysisPending()
+                ? queueAnalysis(iid, imageUrl, refImage.getBytes(), lambdaThreshold) : null;
+        return withServerTiming(response, result, job);
+    }
+
+    /**
+     * Creates the inspection row for an already stored image with an empty anomalies list;
+     * an analysis job fills the anomalies in later (see applyAnalysis).
+     * @return the iid of the new row
+     */
+    public Long createInspectionPendingAnalysis(
+            String transformerNumber,
+            String inspectionNumber,
+            String inspectionDate,
+            String maintainanceDate,
+            String status,
+            String inspector,
+            String imageUrl
+    ) throws IOException {
+        if (inspectionNumber == null || inspectionNumber.trim().isEmpty()) {
+            inspectionNumber = generateUniqueInspectionNumber();
+        }
+        ResponseEntity<String> response = insertInspection(transformerNumber, inspectionNumber, inspectionDate,
+                maintainanceDate, status, inspector, imageUrl, Collections.emptyList());
+        Long iid = getCreatedIid(response);
+        if (iid == null) {
+            throw new IOException("Inspection insert did not return an iid");
+        }
+        return iid;
+    }
+
+    private ResponseEntity<String> insertInspection(
+            String transformerNumber,
+            String inspectionNumber,
+            String inspectionDate,
+            String maintainanceDate,
+            String status,
+            String inspector,
+            String imageUrl,
+            List<Detection> detections
+    ) throws IOException {
+        Map<String, Object> body = inspectionRow(transformerNumber, inspectionNumber, inspectionDate,
+                maintainanceDate, status, inspector, imageUrl, detections);
+
+        ResponseEntity<String> response = supabaseClient.post("inspections", body);
+        INSPECTION_DIAGNOSTICS.debug("insert: body={} response={}", Diagnostics.payload(body), Diagnostics.payload(response.getBody()));
+        return response;
+    }
 
+    // Every row has the same keys, which a PostgREST bulk insert requires
+    private Map<String, Object> inspectionRow(
+            String transformerNumber,
+            String inspectionNumber,
+            String inspectionDate,
+            String maintainanceDate,
+            String status,
+            String inspector,
+            String imageUrl,
+            List<Detection> detections
+    ) {
         Map<String, Object> body = new HashMap<>();
         body.put("transformerNumber", transformerNumber);
         body.put("inspectionNumber", inspectionNumber);
@@ -93,580 +212,743 @@ public class InspectionService {
         body.put("status", status);
         body.put("inspector", inspector);
         body.put("refImage", imageUrl);
+        imageVariantService.putVariantUrls(body, "refImage", imageUrl);
         body.put("anomalies", detections);
-        body.put("anomaliesLog", anomaliesLog);
-
-        // Debug: Print what we're sending to database
-        System.out.println("=== DEBUG: Request Body to Database ===");
-        System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(body));
-
-        String dbUrl = supabaseUrl + "/rest/v1/inspections";
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(body, dbHeaders);
+        // The log lives in the anomaly_log table now; the legacy column is left empty for new rows
+        body.put("anomaliesLog", new ArrayList<>());
+        return body;
+    }
 
-        ResponseEntity<String> response = restTemplate.exchange(dbUrl, HttpMethod.POST, requestEntity, String.class);
+    /**
+     * Creates many inspections in one request. Images are uploaded and analysed with at most
+     * inspections.batch.concurrency in flight, then all rows go to PostgREST in a single bulk insert
+     * and all their log entries in a second one.
+     * Each item has the same fields as createInspection; items that fail validation, upload or analysis are
+     * reported individually and left out of the insert.
+     *
+     * @return one result per item, in request order: index, status ("created"/"failed") and iid,
+     *         inspectionNumber, refImage, anomalies (count) or error; items the detector could not analyse
+     *         also carry analysis "pending" and the jobId of their queued re-analysis
+     */
+    public List<Map<String, Object>> createInspectionsBatch(List<Map<String, String>> items, List<MultipartFile> images) throws IOException {
+        int count = items.size();
+        List<Map<String, Object>> results = new ArrayList<>(count);
+        List<CompletableFuture<ImageAnalysisResult>> analyses = new ArrayList<>(count);
+        long[] startedAt = new long[count];
+        Semaphore inFlight = new Semaphore(Math.max(1, batchConcurrency));
+
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> itemResult = new LinkedHashMap<>();
+            itemResult.put("index", i);
+            results.add(itemResult);
+
+            String transformerNumber = items.get(i).get("transformerNumber");
+            if (transformerNumber == null || transformerNumber.trim().isEmpty()) {
+                itemResult.put("status", "failed");
+                itemResult.put("error", "Missing required parameter: transformerNumber");
+                analyses.add(null);
+                continue;
+            }
 
-        // Debug: Print the response from database
-        System.out.println("=== DEBUG: Database Response ===");
-        System.out.println(response.getBody());
+            MultipartFile image = i < images.size() ? images.get(i) : null;
+            if (image == null || image.isEmpty()) {
+                analyses.add(CompletableFuture.completedFuture(
+                        new ImageAnalysisResult("", Collections.emptyList(), new ArrayList<>())));
+                continue;
+            }
 
-        return response;
-    }
+            // Blocks this request thread while the batch already has batchConcurrency images in flight
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while queueing batch images");
+            }
+            startedAt[i] = System.nanoTime();  // the deadline starts once the image is in flight
+            CompletableFuture<ImageAnalysisResult> analysis;
+            try {
+                analysis = startUploadAndAnalyze(image.getBytes(), image.getOriginalFilename(), image.getContentType(), lambdaThreshold);
+            } catch (IOException | RuntimeException e) {
+                inFlight.release();
+                fail(itemResult, e.getMessage());
+                analyses.add(null);
+                continue;
+            }
+            analysis.whenComplete((result, ex) -> inFlight.release());
+            analyses.add(analysis);
+        }
 
+        // Collect the analyses, each under its own deadline, and build the rows of the successful items
+        List<Integer> insertedIndexes = new ArrayList<>();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<ImageAnalysisResult> insertedResults = new ArrayList<>();
+        List<String> inspectionNumbers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<ImageAnalysisResult> analysis = analyses.get(i);
+            if (analysis == null) {
+                continue;
+            }
+            ImageAnalysisResult result;
+            try {
+                long remainingNanos = TimeUnit.MILLISECONDS.toNanos(analysisTimeoutMs) - (System.nanoTime() - startedAt[i]);
+                result = analysis.get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                analysis.cancel(true);
+                fail(results.get(i), "Image upload/analysis did not finish within " + analysisTimeoutMs + " ms");
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for batch images");
+            } catch (ExecutionException e) {
+                fail(results.get(i), toIOException(e.getCause()).getMessage());
+                continue;
+            }
 
-    public ResponseEntity<String> updateInspectionRefImage(Long iid, MultipartFile refImage) throws IOException {
-        Map<String, Object> existingInspection = getInspectionById(iid);
-        if (existingInspection == null) {
-            throw new RuntimeException("Inspection with IID " + iid + " not found");
+            Map<String, String> item = items.get(i);
+            String inspectionNumber = item.get("inspectionNumber");
+            inspectionNumbers.add(inspectionNumber == null || inspectionNumber.trim().isEmpty() ? null : inspectionNumber);
+            insertedIndexes.add(i);
+            insertedResults.add(result);
+            rows.add(inspectionRow(item.get("transformerNumber"), null, item.get("inspectionDate"),
+                    item.get("maintainanceDate"), item.get("status"), item.get("inspector"),
+                    result.getImageUrl(), result.getDetections()));
         }
 
-        String imageUrl = "";
-        List<Detection> detections = Collections.emptyList();
-        List<Map<String, Object>> anomaliesLog = getAnomaliesLogList(iid);
+        if (rows.isEmpty()) {
+            return results;
+        }
 
-        if (refImage != null && !refImage.isEmpty()) {
-            ImageAnalysisResult result = uploadImageAndAnalyze(refImage);
-            imageUrl = result.getImageUrl();
-            detections = result.getDetections();
+        // Generated numbers are checked against the table in one query rather than one per item
+        fillInspectionNumbers(inspectionNumbers);
+        for (int r = 0; r < rows.size(); r++) {
+            rows.get(r).put("inspectionNumber", inspectionNumbers.get(r));
+        }
 
-            // Get the NEW anomalies log from result and ADD to existing log
-            List<Map<String, Object>> newAnomaliesLog = result.getAnomaliesLog();
-            if (newAnomaliesLog != null) {
-                anomaliesLog.addAll(newAnomaliesLog);
+        ResponseEntity<String> response = supabaseClient.post("inspections", rows);
+        List<Map<String, Object>> created = Json.ROWS.readValue(response.getBody());
+
+        // PostgREST returns the inserted rows in the order they were sent
+        Map<Long, List<AnomalyLogEntry>> logEntries = new LinkedHashMap<>();
+        for (int r = 0; r < rows.size(); r++) {
+            int index = insertedIndexes.get(r);
+            Map<String, Object> itemResult = results.get(index);
+            Map<String, Object> row = r < created.size() ? created.get(r) : rows.get(r);
+            Long iid = row.get("iid") instanceof Number ? ((Number) row.get("iid")).longValue() : null;
+            ImageAnalysisResult result = insertedResults.get(r);
+
+            itemResult.put("status", "created");
+            itemResult.put("iid", iid);
+            itemResult.put("inspectionNumber", row.get("inspectionNumber"));
+            itemResult.put("refImage", result.getImageUrl());
+            itemResult.put("anomalies", result.getDetections().size());
+            if (result.isAnalysisPending()) {
+                itemResult.put("analysis", "pending");
+                AnalysisJob job = queueAnalysis(iid, result.getImageUrl(), images.get(index).getBytes(), lambdaThreshold);
+                if (job != null) {
+                    itemResult.put("jobId", job.getId());
+                }
             }
+            // Without an iid (no representation returned) the entries can't be attributed
+            if (iid != null) {
+                logEntries.put(iid, result.getAnomaliesLog());
+            }
+        }
+        try {
+            anomalyLogService.appendAll(logEntries);
+        } catch (RuntimeException e) {
+            LOG.error("Anomaly log entries for batch inspections {} were not stored", logEntries.keySet(), e);
         }
 
-        HttpHeaders dbHeaders = getHeaders();
-        dbHeaders.setContentType(MediaType.APPLICATION_JSON);
-        dbHeaders.set("Prefer", "return=representation");
+        return results;
+    }
 
-        // PATCH only the fields we're updating
-        Map<String, Object> updateFields = new HashMap<>();
-        updateFields.put("refImage", imageUrl);
-        updateFields.put("anomalies", detections);
-        updateFields.put("anomaliesLog", anomaliesLog);
+    /**
+     * Queues another analysis of an image the detector could not take (analysis pending), so the inspection
+     * gets its anomalies once the detector is back.
+     * @return the job, or null when there is no iid or the job queue is full
+     */
+    private AnalysisJob queueAnalysis(Long iid, String imageUrl, byte[] bytes, double threshold) {
+        if (iid == null || analysisJobService == null) {
+            return null;
+        }
+        try {
+            return analysisJobService.submitAnalysis(iid, imageUrl, bytes, threshold);
+        } catch (JobQueueFullException e) {
+            return null;
+        }
+    }
+
+    private void fail(Map<String, Object> itemResult, String error) {
+        itemResult.put("status", "failed");
+        itemResult.put("error", error);
+    }
 
-        String dbUrl = supabaseUrl + "/rest/v1/inspections?iid=eq." + iid;
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(updateFields, dbHeaders);
 
-        return restTemplate.exchange(dbUrl, HttpMethod.PATCH, requestEntity, String.class);
+    public ResponseEntity<String> updateInspectionRefImage(Long iid, MultipartFile refImage) throws IOException {
+        return updateInspectionRefImage(iid, refImage, null);
     }
 
+    /**
+     * Replaces the reference image and its anomalies. The write is conditional on the version read just before it,
+     * like the anomaly edits, so an edit made during the upload is never overwritten by a stale version number.
+     */
     public ResponseEntity<String> updateInspectionRefImage(Long iid, MultipartFile refImage, Double threshold) throws IOException {
-        Map<String, Object> existingInspection = getInspectionById(iid);
-        if (existingInspection == null) {
+        // Checked up front so a missing inspection doesn't cost an upload
+        if (getAnomalySnapshot(iid) == null) {
             throw new RuntimeException("Inspection with IID " + iid + " not found");
         }
 
         String imageUrl = "";
         List<Detection> detections = Collections.emptyList();
-        List<Map<String, Object>> anomaliesLog = getAnomaliesLogList(iid);
-
-        System.out.println("=== DEBUG: updateInspectionRefImage called ===");
-        System.out.println("Existing anomaliesLog size: " + anomaliesLog.size());
+        List<AnomalyLogEntry> newAnomaliesLog = new ArrayList<>();
 
-        // Validate threshold: must be between 0 and 1, else use default
-        double usedThreshold = (threshold != null && threshold >= 0.0 && threshold <= 1.0) ? threshold : lambdaThreshold;
+        double usedThreshold = resolveThreshold(threshold);
 
+        ImageAnalysisResult result = null;
         if (refImage != null && !refImage.isEmpty()) {
-            ImageAnalysisResult result = uploadImageAndAnalyze(refImage, usedThreshold);
+            result = uploadImageAndAnalyze(refImage, usedThreshold);
             imageUrl = result.getImageUrl();
             detections = result.getDetections();
 
-            // Get the NEW anomalies log from result and ADD to existing log
-            List<Map<String, Object>> newAnomaliesLog = result.getAnomaliesLog();
-            if (newAnomaliesLog != null) {
-                anomaliesLog.addAll(newAnomaliesLog);
+            // Only the NEW log entries are appended to the log table
+            if (result.getAnomaliesLog() != null) {
+                newAnomaliesLog = result.getAnomaliesLog();
             }
-
-            System.out.println("=== DEBUG: After uploadImageAndAnalyze in UPDATE ===");
-            System.out.println("Detections size: " + detections.size());
-            System.out.println("New anomalies log entries: " + (newAnomaliesLog != null ? newAnomaliesLog.size() : 0));
-            System.out.println("Total anomaliesLog size: " + anomaliesLog.size());
-            System.out.println("AnomaliesLog array:");
-            System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(anomaliesLog));
+            INSPECTION_DIAGNOSTICS.debug("update {}: detections={} newLogEntries={}", iid, detections.size(), newAnomaliesLog.size());
         }
 
-        HttpHeaders dbHeaders = getHeaders();
-        dbHeaders.setContentType(MediaType.APPLICATION_JSON);
-        dbHeaders.set("Prefer", "return=representation");
-
-        // Use PATCH instead of PUT to only update the fields we're changing
-        Map<String, Object> updateFields = new HashMap<>();
-        updateFields.put("refImage", imageUrl);
-        updateFields.put("anomalies", detections);
-        updateFields.put("anomaliesLog", anomaliesLog);
+        ResponseEntity<String> response = mutateAnomalies(iid, null, refImageFields(imageUrl), null,
+                replaceAnomalies(detections, newAnomaliesLog));
+        INSPECTION_DIAGNOSTICS.debug("update {}: response={}", iid, Diagnostics.payload(response.getBody()));
 
-        System.out.println("=== DEBUG: Update Fields to Database (UPDATE) ===");
-        System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(updateFields));
+        AnalysisJob job = result != null && result.isAnalysisPending()
+                ? queueAnalysis(iid, imageUrl, refImage.getBytes(), usedThreshold) : null;
+        return withServerTiming(response, result, job);
+    }
 
-        String dbUrl = supabaseUrl + "/rest/v1/inspections?iid=eq." + iid;
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(updateFields, dbHeaders);
+    /**
+     * Replaces the reference image of an inspection with an already stored image and clears its anomalies,
+     * which belonged to the previous image; an analysis job fills them in later (see applyAnalysis).
+     */
+    public void replaceRefImagePendingAnalysis(Long iid, String imageUrl) throws IOException {
+        mutateAnomalies(iid, null, refImageFields(imageUrl), null,
+                replaceAnomalies(Collections.emptyList(), Collections.emptyList()));
+    }
 
-        ResponseEntity<String> response = restTemplate.exchange(dbUrl, HttpMethod.PATCH, requestEntity, String.class);
+    // refImage plus its variant URLs, written together with the anomalies found on it
+    private Map<String, Object> refImageFields(String imageUrl) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("refImage", imageUrl);
+        imageVariantService.putVariantUrls(fields, "refImage", imageUrl);
+        return fields;
+    }
 
-        System.out.println("=== DEBUG: Database Response (UPDATE) ===");
-        System.out.println(response.getBody());
+    /**
+     * Runs detection on the image and stores the result as the inspection's anomalies (plus their log entries),
+     * next to the ones users marked while the analysis was pending.
+     * The write only goes through while imageUrl is still the inspection's reference image; a newer image has its
+     * own analysis, so this one is discarded with an IllegalStateException.
+     * Unlike the synchronous path, a failing Lambda call is reported to the caller instead of yielding no anomalies.
+     * @return the number of detections stored
+     */
+    public int applyAnalysis(Long iid, String imageUrl, byte[] bytes, double threshold) throws IOException {
+        ImageAnalysisResult result = detect(bytes, threshold);
+        mutateAnomalies(iid, null, Collections.emptyMap(), imageUrl, (anomalies, newLogEntries) -> {
+            anomalies.removeIf(anomaly -> anomaly.getMadeBy() != MadeBy.USER);
+            anomalies.addAll(result.getDetections());
+            newLogEntries.addAll(result.getAnomaliesLog());
+        });
+        return result.getDetections().size();
+    }
 
-        return response;
+    // Swaps in the anomalies of a new image; only the added ones are logged
+    private AnomalyMutation replaceAnomalies(List<Detection> detections, List<AnomalyLogEntry> addedLog) {
+        return (anomalies, newLogEntries) -> {
+            anomalies.clear();
+            anomalies.addAll(detections);
+            newLogEntries.addAll(addedLog);
+        };
     }
 
-    private Map<String, Object> getInspectionById(Long iid) throws IOException {
-        String url = supabaseUrl + "/rest/v1/inspections?iid=eq." + iid + "&select=*&limit=1";
-        HttpHeaders headers = getHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-        try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            List<Map<String, Object>> inspectionList = objectMapper.readValue(response.getBody(), new TypeReference<List<Map<String, Object>>>() {});
-            return inspectionList.isEmpty() ? null : inspectionList.get(0);
-        } catch (HttpClientErrorException.NotFound e) {
-            return null;
-        }
+    // Threshold must be between 0 and 1, else the configured default is used
+    public double resolveThreshold(Double threshold) {
+        return (threshold != null && threshold >= 0.0 && threshold <= 1.0) ? threshold : lambdaThreshold;
     }
 
     // Keep this unchanged
     public String uploadImage(MultipartFile file) throws IOException {
         if (file == null || file.isEmpty()) return "";
-        String originalFileName = file.getOriginalFilename();
-        String sanitizedFileName = (originalFileName == null) ? "file" : originalFileName.replaceAll("[^a-zA-Z0-9.\\-_]", "_");
-        String fileName = UUID.randomUUID().toString() + "_" + sanitizedFileName;
-
-        HttpHeaders storageHeaders = getHeaders();
-        storageHeaders.setContentType(MediaType.parseMediaType(file.getContentType()));
-
-        HttpEntity<byte[]> storageRequestEntity = new HttpEntity<>(file.getBytes(), storageHeaders);
-
-        String storageUrl = UriComponentsBuilder.fromHttpUrl(supabaseUrl)
-                .path("/storage/v1/object/")
-                .pathSegment(bucketName, "refImages", fileName)
-                .toUriString();
-
-        restTemplate.exchange(storageUrl, HttpMethod.POST, storageRequestEntity, String.class);
+        return uploadImage(file.getBytes(), file.getOriginalFilename(), file.getContentType());
+    }
 
-        return supabaseUrl + "/storage/v1/object/public/" + bucketName + "/refImages/" + fileName;
+    public String uploadImage(byte[] bytes, String originalFileName, String contentType) throws IOException {
+        return imageVariantService.store("inspections", "refImage", "refImages", bytes, originalFileName, contentType);
     }
 
-    // New method: uploads to Supabase, then sends Base64 image to Lambda and returns both URL and detections
+    // Uploads to Supabase and sends the Base64 image to Lambda, returning both URL and detections
     public ImageAnalysisResult uploadImageAndAnalyze(MultipartFile file) throws IOException {
-        String imageUrl = "";
-        List<Detection> detections = Collections.emptyList();
-        List<Map<String, Object>> anomaliesLog = new ArrayList<>();
+        return uploadImageAndAnalyze(file, lambdaThreshold);
+    }
 
+    /**
+     * Overloaded method to support threshold.
+     * The storage upload and the Lambda call are independent, so they run concurrently on the analysis executor
+     * and are joined under one deadline (lambda.analysisTimeoutMs). If the upload fails or the deadline passes,
+     * the other stage is cancelled. Lambda errors keep degrading to an empty detection list as before.
+     */
+    public ImageAnalysisResult uploadImageAndAnalyze(MultipartFile file, double threshold) throws IOException {
         if (file == null || file.isEmpty()) {
-            return new ImageAnalysisResult(imageUrl, detections, anomaliesLog);
+            return new ImageAnalysisResult("", Collections.emptyList(), new ArrayList<>());
         }
 
-        // 1) Keep existing upload flow
-        imageUrl = uploadImage(file);
-
-        // 2) Prepare Lambda payload
-        String imgBase64 = Base64.getEncoder().encodeToString(file.getBytes());
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("image", imgBase64);
-        payload.put("threshold", lambdaThreshold);
-        payload.put("iou_threshold", lambdaIouThreshold);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
-
-        // 3) Invoke Lambda
+        CompletableFuture<ImageAnalysisResult> analysis =
+                startUploadAndAnalyze(file.getBytes(), file.getOriginalFilename(), file.getContentType(), threshold);
         try {
-            ResponseEntity<String> response = restTemplate.postForEntity(lambdaUrl, request, String.class);
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                System.out.println("Lambda response: " + response.getBody());
-
-                Map<String, Object> result = objectMapper.readValue(response.getBody(), new TypeReference<Map<String, Object>>() {});
-
-                Object imageUrlObj = result.get("imageUrl");
-                if (imageUrlObj instanceof String) {
-                    imageUrl = (String) imageUrlObj;
-                }
+            return analysis.get(analysisTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            analysis.cancel(true);
+            throw new IOException("Image upload/analysis did not finish within " + analysisTimeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            analysis.cancel(true);
+            throw new IOException("Interrupted while uploading/analysing image");
+        } catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        }
+    }
 
-                Object detectionsObj = result.get("detections");
-                if (detectionsObj != null) {
-                    String detectionsJson = objectMapper.writeValueAsString(detectionsObj);
-                    detections = objectMapper.readValue(detectionsJson, new TypeReference<List<Detection>>() {});
-
-                    // Convert coordinates and assign unique IDs, mark as AI-generated, and CREATE LOG ENTRIES
-                    for (Detection detection : detections) {
-                        // Convert box coordinates from [x1, y1, x2, y2] to [x_center, y_center, width, height]
-                        convertBoxCoordinates(detection);
-
-                        if (detection.getId() == null || detection.getId().isEmpty()) {
-                            detection.setId(UUID.randomUUID().toString());
-                        }
-                        detection.setMadeBy("AI");
-
-                        // Create anomaly log entry for this detection
-                        Map<String, Object> logEntry = createAnomalyLogEntry(
-                            detection.getId(),
-                            detection.getBox(),
-                            "AI",
-                            detection.getClassName(),
-                            detection.getConfidence(),
-                            "add"
-                        );
-                        anomaliesLog.add(logEntry);
+    /**
+     * Starts the upload and the Lambda call of one image without blocking.
+     * The returned future fails with the upload's own error if the upload fails; cancelling it cancels both stages.
+     */
+    private CompletableFuture<ImageAnalysisResult> startUploadAndAnalyze(byte[] bytes, String originalFileName,
+                                                                         String contentType, double threshold) {
+        long[] uploadNanos = new long[1];
+        long[] inferenceNanos = new long[1];
+
+        // CancellableFuture rather than supplyAsync, so the cancels below interrupt the stage and abort its request
+        CompletableFuture<String> upload = CancellableFuture.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                return uploadImage(bytes, originalFileName, contentType);
+            } finally {
+                uploadNanos[0] = System.nanoTime() - start;
+            }
+        }, analysisExecutor);
+
+        CompletableFuture<ImageAnalysisResult> inference = CancellableFuture.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                return analyzeImage(bytes, threshold);
+            } finally {
+                inferenceNanos[0] = System.nanoTime() - start;
+            }
+        }, analysisExecutor);
+
+        // Whichever stage fails first cancels its sibling
+        upload.whenComplete((url, ex) -> { if (ex != null) inference.cancel(true); });
+        inference.whenComplete((result, ex) -> { if (ex != null) upload.cancel(true); });
+
+        CompletableFuture<ImageAnalysisResult> analysis = new CompletableFuture<>();
+        CompletableFuture.allOf(upload, inference).whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                // Report the upload's own error rather than the cancellation it caused on the Lambda call
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (upload.isCompletedExceptionally()) {
+                    try {
+                        upload.join();
+                    } catch (CompletionException uploadError) {
+                        cause = uploadError.getCause();
+                    } catch (CancellationException cancelled) {
+                        cause = cancelled;
                     }
-                    System.out.println("Detections: " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(detections));
-                    System.out.println("AnomaliesLog created: " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(anomaliesLog));
                 }
+                analysis.completeExceptionally(cause);
+                return;
             }
-        } catch (Exception ex) {
-            System.err.println("Error during Lambda analysis: " + ex.getMessage());
-            ex.printStackTrace();
-            detections = Collections.emptyList();
-            anomaliesLog = new ArrayList<>();
-        }
-
-        return new ImageAnalysisResult(imageUrl, detections, anomaliesLog);
+            ImageAnalysisResult result = inference.join();
+            // Always the storage URL: the variants and the content-addressed key are derived from it
+            result.setImageUrl(upload.join());
+            result.setUploadMillis(TimeUnit.NANOSECONDS.toMillis(uploadNanos[0]));
+            result.setInferenceMillis(TimeUnit.NANOSECONDS.toMillis(inferenceNanos[0]));
+            analysis.complete(result);
+        });
+        // A caller giving up (timeout) stops both stages
+        analysis.whenComplete((result, ex) -> {
+            if (ex != null) {
+                upload.cancel(true);
+                inference.cancel(true);
+            }
+        });
+        return analysis;
     }
 
-    // Overloaded method to support threshold
-    public ImageAnalysisResult uploadImageAndAnalyze(MultipartFile file, double threshold) throws IOException {
-        String imageUrl = "";
-        List<Detection> detections = Collections.emptyList();
-        List<Map<String, Object>> anomaliesLog = new ArrayList<>();
-
-        if (file == null || file.isEmpty()) {
-            return new ImageAnalysisResult(imageUrl, detections, anomaliesLog);
+    private IOException toIOException(Throwable cause) {
+        if (cause instanceof UncheckedIOException) {
+            cause = cause.getCause();
         }
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException("Image upload/analysis failed: " + cause.getMessage(), cause);
+    }
 
-        // 1) Keep existing upload flow
-        imageUrl = uploadImage(file);
+    // Sends the image to the detector; errors degrade to an empty detection list, an unavailable detector to "pending"
+    private ImageAnalysisResult analyzeImage(byte[] bytes, double threshold) {
+        try {
+            return detect(bytes, threshold);
+        } catch (InferenceUnavailableException ex) {
+            LOG.warn("Analysis pending: {}", ex.getMessage());
+            ImageAnalysisResult pending = new ImageAnalysisResult("", Collections.emptyList(), new ArrayList<>());
+            pending.setAnalysisPending(true);
+            return pending;
+        } catch (Exception ex) {
+            LOG.error("Error during Lambda analysis", ex);
+            return new ImageAnalysisResult("", Collections.emptyList(), new ArrayList<>());
+        }
+    }
 
-        // 2) Prepare Lambda payload
-        String imgBase64 = Base64.getEncoder().encodeToString(file.getBytes());
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("image", imgBase64);
-        payload.put("threshold", threshold);
-        payload.put("iou_threshold", lambdaIouThreshold);
+    // Sends the image to the detector; imageUrl is only set if the detector returns one
+    private ImageAnalysisResult detect(byte[] bytes, double threshold) throws IOException {
+        IMAGE_SIZE.record(bytes.length);
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
+        // The same image with the same thresholds was analysed before: reuse the Lambda's answer
+        String cacheKey = inferenceCache.key(bytes, threshold, lambdaIouThreshold);
+        InferenceCache.Entry cached = inferenceCache.get(cacheKey);
+        if (cached != null) {
+            return toAnalysisResult(cached.getImageUrl(), cached.copyDetections());
+        }
 
-        // 3) Invoke Lambda
-        try {
-            ResponseEntity<String> response = restTemplate.postForEntity(lambdaUrl, request, String.class);
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                System.out.println("Lambda response: " + response.getBody());
+        // Send a letterboxed copy at the detector's input size rather than the full-resolution image
+        ImagePreprocessor.Prepared prepared = imagePreprocessor.prepare(bytes);
+        ImageAnalysisResult result = inferenceClient.detect(prepared.getBytes(), threshold, lambdaIouThreshold);
+        String imageUrl = result.getImageUrl();
+        List<Detection> detections = result.getDetections();
 
-                Map<String, Object> result = objectMapper.readValue(response.getBody(), new TypeReference<Map<String, Object>>() {});
+        // Convert box coordinates from [x1, y1, x2, y2] to [x_center, y_center, width, height] in the original image
+        for (Detection detection : detections) {
+            convertBoxCoordinates(detection, prepared.getLetterbox());
+        }
 
-                Object imageUrlObj = result.get("imageUrl");
-                if (imageUrlObj instanceof String) {
-                    imageUrl = (String) imageUrlObj;
-                }
+        // Only successful answers are cached
+        inferenceCache.put(cacheKey, new InferenceCache.Entry(imageUrl, detections));
+        return toAnalysisResult(imageUrl, detections);
+    }
 
-                Object detectionsObj = result.get("detections");
-                if (detectionsObj != null) {
-                    String detectionsJson = objectMapper.writeValueAsString(detectionsObj);
-                    detections = objectMapper.readValue(detectionsJson, new TypeReference<List<Detection>>() {});
-
-                    // Convert coordinates and assign unique IDs, mark as AI-generated, and CREATE LOG ENTRIES
-                    for (Detection detection : detections) {
-                        // Convert box coordinates from [x1, y1, x2, y2] to [x_center, y_center, width, height]
-                        convertBoxCoordinates(detection);
-
-                        if (detection.getId() == null || detection.getId().isEmpty()) {
-                            detection.setId(UUID.randomUUID().toString());
-                        }
-                        detection.setMadeBy("AI");
-
-                        // Create anomaly log entry for this detection
-                        Map<String, Object> logEntry = createAnomalyLogEntry(
-                            detection.getId(),
-                            detection.getBox(),
-                            "AI",
-                            detection.getClassName(),
-                            detection.getConfidence(),
-                            "add"
-                        );
-                        anomaliesLog.add(logEntry);
-                    }
-                    System.out.println("Detections: " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(detections));
-                    System.out.println("AnomaliesLog created: " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(anomaliesLog));
-                }
+    // Helper: assign unique IDs, mark detections as AI-generated, and CREATE LOG ENTRIES
+    private ImageAnalysisResult toAnalysisResult(String imageUrl, List<Detection> detections) {
+        List<AnomalyLogEntry> anomaliesLog = new ArrayList<>(detections.size());
+        for (Detection detection : detections) {
+            if (detection.getId() == null || detection.getId().isEmpty()) {
+                detection.setId(UUID.randomUUID().toString());
             }
-        } catch (Exception ex) {
-            System.err.println("Error during Lambda analysis: " + ex.getMessage());
-            ex.printStackTrace();
-            detections = Collections.emptyList();
-            anomaliesLog = new ArrayList<>();
+            detection.setMadeBy(MadeBy.AI);
+
+            // Create anomaly log entry for this detection
+            anomaliesLog.add(createAnomalyLogEntry(detection, MadeBy.AI, AnomalyLogEntry.Action.ADD));
         }
-        return new ImageAnalysisResult(imageUrl, detections, anomaliesLog);
+        DETECTION_COUNT.record(detections.size());
+        ANALYSIS_DIAGNOSTICS.debug("analysis: detections={} payload={}", detections.size(), Diagnostics.payload(detections));
+        return new ImageAnalysisResult(imageUrl != null ? imageUrl : "", detections, anomaliesLog);
     }
 
-    private HttpHeaders getHeaders() {
+    // Helper: copy an upstream response and add per-stage timings of the image pipeline as a Server-Timing header,
+    // plus X-Analysis-Status: pending when the detector was unavailable and the anomalies are still to come,
+    // with X-Analysis-Job naming the job that analyses the image again (GET /api/jobs/{id})
+    private ResponseEntity<String> withServerTiming(ResponseEntity<String> response, ImageAnalysisResult result,
+                                                    AnalysisJob job) {
+        if (result == null) {
+            return response;
+        }
         HttpHeaders headers = new HttpHeaders();
-        headers.set("apikey", supabaseApiKey);
-        headers.set("Authorization", "Bearer " + supabaseApiKey);
-        return headers;
+        headers.putAll(response.getHeaders());
+        headers.set("Server-Timing", "upload;dur=" + result.getUploadMillis() + ", inference;dur=" + result.getInferenceMillis());
+        if (result.isAnalysisPending()) {
+            headers.set("X-Analysis-Status", "pending");
+        }
+        if (job != null) {
+            headers.set("X-Analysis-Job", job.getId());
+        }
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
     }
 
-    // Get anomalies from the inspections table (from the anomalies JSON column)
+    // Get anomalies from the inspections table (from the anomalies JSON column), tagged with the row version as ETag
     public ResponseEntity<String> getAnomalies(Long iid) throws IOException {
-        Map<String, Object> inspection = getInspectionById(iid);
-        if (inspection == null) {
+        AnomalySnapshot snapshot = getAnomalySnapshot(iid);
+        if (snapshot == null) {
             throw new RuntimeException("Inspection with IID " + iid + " not found");
         }
 
-        Object anomaliesObj = inspection.get("anomalies");
-        String anomaliesJson = objectMapper.writeValueAsString(anomaliesObj != null ? anomaliesObj : Collections.emptyList());
-
         return ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(anomaliesJson);
+                .eTag(toETag(snapshot.getVersion()))
+                .body(Json.WRITER.writeValueAsString(snapshot.getAnomalies()));
     }
 
     // Add a new anomaly to the anomalies list in the inspection
-    public ResponseEntity<String> addAnomaly(Long iid, Map<String, Object> anomaly) throws IOException {
-        Map<String, Object> inspection = getInspectionById(iid);
-        if (inspection == null) {
-            throw new RuntimeException("Inspection with IID " + iid + " not found");
-        }
-
-        // Get existing anomalies and log
-        List<Map<String, Object>> anomalies = getAnomaliesList(iid);
-        List<Map<String, Object>> anomaliesLog = getAnomaliesLogList(iid);
+    public ResponseEntity<String> addAnomaly(Long iid, Detection anomaly) throws IOException {
+        return addAnomaly(iid, anomaly, null);
+    }
 
+    public ResponseEntity<String> addAnomaly(Long iid, Detection anomaly, String ifMatch) throws IOException {
         // Assign a unique ID to the new anomaly if not present
-        if (!anomaly.containsKey("id") || anomaly.get("id") == null) {
-            anomaly.put("id", UUID.randomUUID().toString());
+        if (anomaly.getId() == null) {
+            anomaly.setId(UUID.randomUUID().toString());
         }
 
         // Mark manually added anomalies as "User"
-        if (!anomaly.containsKey("madeBy") || anomaly.get("madeBy") == null) {
-            anomaly.put("madeBy", "User");
+        if (anomaly.getMadeBy() == null) {
+            anomaly.setMadeBy(MadeBy.USER);
         }
 
-        // Add the new anomaly
-        anomalies.add(anomaly);
+        return mutateAnomalies(iid, ifMatch, (anomalies, newLogEntries) -> {
+            // Add the new anomaly
+            anomalies.add(anomaly);
 
-        // Log the addition
-        Map<String, Object> logEntry = createAnomalyLogEntry(
-            (String) anomaly.get("id"),
-            anomaly.get("box"),
-            "User",
-            (String) anomaly.get("className"),
-            anomaly.get("confidence") instanceof Number ? ((Number) anomaly.get("confidence")).doubleValue() : null,
-            "add"
-        );
-        anomaliesLog.add(logEntry);
+            // Log the addition
+            newLogEntries.add(createAnomalyLogEntry(anomaly, MadeBy.USER, AnomalyLogEntry.Action.ADD));
+        });
+    }
 
-        // Update the inspection with the new anomalies list and log
-        HttpHeaders headers = getHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("Prefer", "return=representation");
+    // Update an existing anomaly in the anomalies list by its ID
+    public ResponseEntity<String> updateAnomaly(Long iid, String anomalyId, Detection updatedAnomaly) throws IOException {
+        return updateAnomaly(iid, anomalyId, updatedAnomaly, null);
+    }
 
-        Map<String, Object> body = new HashMap<>();
-        body.put("anomalies", anomalies);
-        body.put("anomaliesLog", anomaliesLog);
+    public ResponseEntity<String> updateAnomaly(Long iid, String anomalyId, Detection updatedAnomaly, String ifMatch) throws IOException {
+        return mutateAnomalies(iid, ifMatch, (anomalies, newLogEntries) -> {
+            // Find and update the anomaly with matching ID
+            boolean found = false;
+            MadeBy madeBy = MadeBy.USER;
+            for (int i = 0; i < anomalies.size(); i++) {
+                Detection anomaly = anomalies.get(i);
+                if (anomalyId.equals(anomaly.getId())) {
+                    // Preserve the ID and madeBy
+                    updatedAnomaly.setId(anomalyId);
+                    // Preserve the original madeBy value - don't allow it to be changed
+                    if (anomaly.getMadeBy() != null) {
+                        madeBy = anomaly.getMadeBy();
+                        updatedAnomaly.setMadeBy(madeBy);
+                    }
+                    anomalies.set(i, updatedAnomaly);
+                    found = true;
+                    break;
+                }
+            }
 
-        String url = supabaseUrl + "/rest/v1/inspections?iid=eq." + iid;
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
+            if (!found) {
+                throw new RuntimeException("Anomaly with ID " + anomalyId + " not found in inspection " + iid);
+            }
 
-        return restTemplate.exchange(url, HttpMethod.PATCH, request, String.class);
+            // Log the update
+            newLogEntries.add(createAnomalyLogEntry(updatedAnomaly, madeBy, AnomalyLogEntry.Action.EDIT));
+        });
     }
 
-    // Update an existing anomaly in the anomalies list by its ID
-    public ResponseEntity<String> updateAnomaly(Long iid, String anomalyId, Map<String, Object> updatedAnomaly) throws IOException {
-        Map<String, Object> inspection = getInspectionById(iid);
-        if (inspection == null) {
-            throw new RuntimeException("Inspection with IID " + iid + " not found");
-        }
+    // Delete an anomaly from the anomalies list by its ID
+    public ResponseEntity<String> deleteAnomaly(Long iid, String anomalyId) throws IOException {
+        return deleteAnomaly(iid, anomalyId, null);
+    }
 
-        // Get existing anomalies and log
-        List<Map<String, Object>> anomalies = getAnomaliesList(iid);
-        List<Map<String, Object>> anomaliesLog = getAnomaliesLogList(iid);
-
-        // Find and update the anomaly with matching ID
-        boolean found = false;
-        String madeBy = "User";
-        for (int i = 0; i < anomalies.size(); i++) {
-            Map<String, Object> anomaly = anomalies.get(i);
-            if (anomalyId.equals(anomaly.get("id"))) {
-                // Preserve the ID and madeBy
-                updatedAnomaly.put("id", anomalyId);
-                // Preserve the original madeBy value - don't allow it to be changed
-                if (anomaly.containsKey("madeBy")) {
-                    madeBy = (String) anomaly.get("madeBy");
-                    updatedAnomaly.put("madeBy", madeBy);
+    public ResponseEntity<String> deleteAnomaly(Long iid, String anomalyId, String ifMatch) throws IOException {
+        return mutateAnomalies(iid, ifMatch, (anomalies, newLogEntries) -> {
+            // Find the anomaly to capture its data before deletion
+            Detection deletedAnomaly = null;
+            for (Detection anomaly : anomalies) {
+                if (anomalyId.equals(anomaly.getId())) {
+                    deletedAnomaly = anomaly;
+                    break;
                 }
-                anomalies.set(i, updatedAnomaly);
-                found = true;
-                break;
             }
-        }
-
-        if (!found) {
-            throw new RuntimeException("Anomaly with ID " + anomalyId + " not found in inspection " + iid);
-        }
-
-        // Log the update
-        Map<String, Object> logEntry = createAnomalyLogEntry(
-            anomalyId,
-            updatedAnomaly.get("box"),
-            madeBy,
-            (String) updatedAnomaly.get("className"),
-            updatedAnomaly.get("confidence") instanceof Number ? ((Number) updatedAnomaly.get("confidence")).doubleValue() : null,
-            "edit"
-        );
-        anomaliesLog.add(logEntry);
 
-        // Update the inspection with the modified anomalies list and log
-        HttpHeaders headers = getHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("Prefer", "return=representation");
+            // Remove the anomaly with matching ID
+            boolean removed = anomalies.removeIf(anomaly -> anomalyId.equals(anomaly.getId()));
 
-        Map<String, Object> body = new HashMap<>();
-        body.put("anomalies", anomalies);
-        body.put("anomaliesLog", anomaliesLog);
+            if (!removed) {
+                throw new RuntimeException("Anomaly with ID " + anomalyId + " not found in inspection " + iid);
+            }
 
-        String url = supabaseUrl + "/rest/v1/inspections?iid=eq." + iid;
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
+            // Log the deletion
+            if (deletedAnomaly != null) {
+                newLogEntries.add(createAnomalyLogEntry(deletedAnomaly, deletedAnomaly.getMadeBy(), AnomalyLogEntry.Action.DELETE));
+            }
+        });
+    }
 
-        return restTemplate.exchange(url, HttpMethod.PATCH, request, String.class);
+    // A change to the anomalies list applied to a freshly loaded snapshot; it reports its log entries in newLogEntries
+    @FunctionalInterface
+    private interface AnomalyMutation {
+        void apply(List<Detection> anomalies, List<AnomalyLogEntry> newLogEntries);
     }
 
-    // Delete an anomaly from the anomalies list by its ID
-    public ResponseEntity<String> deleteAnomaly(Long iid, String anomalyId) throws IOException {
-        Map<String, Object> inspection = getInspectionById(iid);
-        if (inspection == null) {
-            throw new RuntimeException("Inspection with IID " + iid + " not found");
-        }
+    /**
+     * Read-modify-write of the anomalies array guarded by the inspection's version column.
+     * The PATCH only matches the version that was read, so a concurrent edit makes it update nothing.
+     * With If-Match the caller gets a 412 on any mismatch; without it the mutation is re-applied on a fresh
+     * snapshot (merging with the other edit) up to anomalies.merge-retries times, then a 409.
+     * The resulting log entries are appended to the anomaly_log table once the PATCH has gone through
+     * (not atomically, see AnomalyLogService); a failed append is logged and the PATCH response returned.
+     */
+    private ResponseEntity<String> mutateAnomalies(Long iid, String ifMatch, AnomalyMutation mutation) throws IOException {
+        return mutateAnomalies(iid, ifMatch, Collections.emptyMap(), null, mutation);
+    }
 
-        // Get existing anomalies and log
-        List<Map<String, Object>> anomalies = getAnomaliesList(iid);
-        List<Map<String, Object>> anomaliesLog = getAnomaliesLogList(iid);
+    /**
+     * Same, with other columns (e.g. refImage) written in the same conditional PATCH.
+     * With requiredRefImage set, the mutation only applies while that is the stored reference image
+     * (checked on every snapshot, so the version filter covers it); otherwise IllegalStateException.
+     */
+    private ResponseEntity<String> mutateAnomalies(Long iid, String ifMatch, Map<String, Object> fields,
+                                                   String requiredRefImage, AnomalyMutation mutation) throws IOException {
+        int attempt = 0;
+        while (true) {
+            AnomalySnapshot snapshot = getAnomalySnapshot(iid);
+            if (snapshot == null) {
+                throw new RuntimeException("Inspection with IID " + iid + " not found");
+            }
 
-        // Find the anomaly to capture its data before deletion
-        Map<String, Object> deletedAnomaly = null;
-        for (Map<String, Object> anomaly : anomalies) {
-            if (anomalyId.equals(anomaly.get("id"))) {
-                deletedAnomaly = anomaly;
-                break;
+            Long version = snapshot.getVersion();
+            if (ifMatch != null && !eTagMatches(ifMatch, version)) {
+                throw new AnomalyConflictException(iid, toETag(version), true);
+            }
+            if (requiredRefImage != null && !requiredRefImage.equals(snapshot.getRefImage())) {
+                throw new IllegalStateException("Inspection " + iid + " has a newer reference image");
             }
-        }
 
-        // Remove the anomaly with matching ID
-        boolean removed = anomalies.removeIf(anomaly -> anomalyId.equals(anomaly.get("id")));
+            // Existing anomalies from the snapshot (one read per mutation)
+            List<Detection> anomalies = snapshot.getAnomalies();
+            List<AnomalyLogEntry> newLogEntries = new ArrayList<>();
+            mutation.apply(anomalies, newLogEntries);
 
-        if (!removed) {
-            throw new RuntimeException("Anomaly with ID " + anomalyId + " not found in inspection " + iid);
-        }
+            long nextVersion = (version != null ? version : 0L) + 1;
+
+            // Update the inspection with the modified anomalies list
+            Map<String, Object> body = new HashMap<>(fields);
+            body.put("anomalies", anomalies);
+            body.put("version", nextVersion);
+
+            String versionFilter = version != null ? "version=eq." + version : "version=is.null";
+            ResponseEntity<String> response = supabaseClient.patch("inspections?iid=eq." + iid + "&" + versionFilter, body);
+
+            if (!isEmptyArray(response.getBody())) {
+                appendLog(iid, newLogEntries);
+                return ResponseEntity.status(response.getStatusCode())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .eTag(toETag(nextVersion))
+                        .body(response.getBody());
+            }
 
-        // Log the deletion
-        if (deletedAnomaly != null) {
-            Map<String, Object> logEntry = createAnomalyLogEntry(
-                anomalyId,
-                deletedAnomaly.get("box"),
-                (String) deletedAnomaly.get("madeBy"),
-                (String) deletedAnomaly.get("className"),
-                deletedAnomaly.get("confidence") instanceof Number ? ((Number) deletedAnomaly.get("confidence")).doubleValue() : null,
-                "delete"
-            );
-            anomaliesLog.add(logEntry);
+            // Someone else wrote in between
+            attempt++;
+            if (ifMatch != null || attempt > anomalyMergeRetries) {
+                throw new AnomalyConflictException(iid, null, ifMatch != null);
+            }
         }
+    }
 
-        // Update the inspection with the modified anomalies list and log
-        HttpHeaders headers = getHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("Prefer", "return=representation");
+    // The rows are already written, so a failed log insert must not turn into an error the client retries
+    private void appendLog(Long iid, List<AnomalyLogEntry> entries) {
+        try {
+            anomalyLogService.append(iid, entries);
+        } catch (RuntimeException e) {
+            LOG.error("Anomaly log entries for inspection {} were not stored", iid, e);
+        }
+    }
 
-        Map<String, Object> body = new HashMap<>();
-        body.put("anomalies", anomalies);
-        body.put("anomaliesLog", anomaliesLog);
+    private String toETag(Long version) {
+        return "\"" + (version != null ? version : 0L) + "\"";
+    }
 
-        String url = supabaseUrl + "/rest/v1/inspections?iid=eq." + iid;
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
+    private boolean eTagMatches(String ifMatch, Long version) {
+        String current = toETag(version);
+        for (String tag : ifMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        return restTemplate.exchange(url, HttpMethod.PATCH, request, String.class);
+    // Streams only the first tokens instead of building a tree of the returned rows
+    private boolean isEmptyArray(String json) throws IOException {
+        if (json == null) {
+            return true;
+        }
+        try (JsonParser parser = Json.MAPPER.createParser(json)) {
+            JsonToken first = parser.nextToken();
+            if (first == null || !first.isStructStart()) {
+                return true;
+            }
+            return parser.nextToken().isStructEnd();
+        }
     }
 
-    // Helper: return anomalies list as parsed objects from the inspection
-    private List<Map<String, Object>> getAnomaliesList(Long iid) throws IOException {
-        Map<String, Object> inspection = getInspectionById(iid);
-        if (inspection == null) {
-            return Collections.emptyList();
+    private AnomalySnapshot getAnomalySnapshot(Long iid) throws IOException {
+        try {
+            ResponseEntity<String> response = supabaseClient.get("inspections?iid=eq." + iid + "&select=iid,version,refImage,anomalies&limit=1");
+            List<AnomalySnapshot> rows = SNAPSHOTS.readValue(response.getBody());
+            return rows.isEmpty() ? null : rows.get(0);
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
         }
+    }
 
-        Object anomaliesObj = inspection.get("anomalies");
-        if (anomaliesObj == null) {
-            return new ArrayList<>();
+    // Helper: iid of the row returned by an insert with Prefer: return=representation
+    private Long getCreatedIid(ResponseEntity<String> response) throws IOException {
+        if (response.getBody() == null) {
+            return null;
+        }
+        List<Map<String, Object>> rows = Json.ROWS.readValue(response.getBody());
+        if (rows.isEmpty() || !(rows.get(0).get("iid") instanceof Number)) {
+            return null;
         }
+        return ((Number) rows.get(0).get("iid")).longValue();
+    }
 
-        // Handle different types that anomaliesObj might be
-        if (anomaliesObj instanceof List) {
-            // If it's already a List, convert each item to Map
-            List<?> anomaliesList = (List<?>) anomaliesObj;
-            List<Map<String, Object>> result = new ArrayList<>();
-            for (Object item : anomaliesList) {
-                if (item instanceof Map) {
-                    result.add((Map<String, Object>) item);
-                } else {
-                    // Convert to Map via JSON serialization
-                    String itemJson = objectMapper.writeValueAsString(item);
-                    Map<String, Object> itemMap = objectMapper.readValue(itemJson, new TypeReference<Map<String, Object>>() {});
-                    result.add(itemMap);
-                }
+    // Helper: replace the nulls in the list with inspection numbers unused in the table and within the list
+    private void fillInspectionNumbers(List<String> inspectionNumbers) throws IOException {
+        Set<String> taken = new HashSet<>();
+        for (String number : inspectionNumbers) {
+            if (number != null) {
+                taken.add(number);
             }
-            return result;
-        } else if (anomaliesObj instanceof String) {
-            // If it's a String, parse it as JSON
-            String anomaliesJson = (String) anomaliesObj;
-            if (anomaliesJson.trim().isEmpty() || anomaliesJson.equals("[]")) {
-                return new ArrayList<>();
-            }
-            return objectMapper.readValue(anomaliesJson, new TypeReference<List<Map<String, Object>>>() {});
-        } else {
-            // For any other type, try to convert via JSON serialization
-            String anomaliesJson = objectMapper.writeValueAsString(anomaliesObj);
-            return objectMapper.readValue(anomaliesJson, new TypeReference<List<Map<String, Object>>>() {});
-        }
-    }
-
-    // Helper: return anomalies log list as parsed objects from the inspection
-    private List<Map<String, Object>> getAnomaliesLogList(Long iid) throws IOException {
-        Map<String, Object> inspection = getInspectionById(iid);
-        if (inspection == null) {
-            return Collections.emptyList();
-        }
-
-        Object anomaliesLogObj = inspection.get("anomaliesLog");
-        if (anomaliesLogObj == null) {
-            return new ArrayList<>();
-        }
-
-        // Handle different types that anomaliesLogObj might be
-        if (anomaliesLogObj instanceof List) {
-            // If it's already a List, convert each item to Map
-            List<?> anomaliesLogList = (List<?>) anomaliesLogObj;
-            List<Map<String, Object>> result = new ArrayList<>();
-            for (Object item : anomaliesLogList) {
-                if (item instanceof Map) {
-                    result.add((Map<String, Object>) item);
-                } else {
-                    // Convert to Map via JSON serialization
-                    String itemJson = objectMapper.writeValueAsString(item);
-                    Map<String, Object> itemMap = objectMapper.readValue(itemJson, new TypeReference<Map<String, Object>>() {});
-                    result.add(itemMap);
+        }
+        for (int attempt = 0; attempt < 100; attempt++) {
+            List<String> candidates = new ArrayList<>();
+            for (int i = 0; i < inspectionNumbers.size(); i++) {
+                if (inspectionNumbers.get(i) == null) {
+                    String candidate;
+                    do {
+                        candidate = String.format("I-%06d", (int) (Math.random() * 1_000_000));
+                    } while (taken.contains(candidate));
+                    taken.add(candidate);
+                    candidates.add(candidate);
+                    inspectionNumbers.set(i, candidate);
                 }
             }
-            return result;
-        } else if (anomaliesLogObj instanceof String) {
-            // If it's a String, parse it as JSON
-            String anomaliesLogJson = (String) anomaliesLogObj;
-            if (anomaliesLogJson.trim().isEmpty() || anomaliesLogJson.equals("[]")) {
-                return new ArrayList<>();
+            if (candidates.isEmpty()) {
+                return;
+            }
+
+            // Give the candidates that already exist back as null for the next round
+            ResponseEntity<String> response = supabaseClient.get("inspections?inspectionNumber=in.("
+                    + String.join(",", candidates) + ")&select=inspectionNumber");
+            List<Map<String, Object>> existing = Json.ROWS.readValue(response.getBody());
+            if (existing.isEmpty()) {
+                return;
+            }
+            for (Map<String, Object> row : existing) {
+                int index = inspectionNumbers.indexOf((String) row.get("inspectionNumber"));
+                if (index >= 0 && candidates.contains(inspectionNumbers.get(index))) {
+                    inspectionNumbers.set(index, null);
+                }
             }
-            return objectMapper.readValue(anomaliesLogJson, new TypeReference<List<Map<String, Object>>>() {});
-        } else {
-            // For any other type, try to convert via JSON serialization
-            String anomaliesLogJson = objectMapper.writeValueAsString(anomaliesLogObj);
-            return objectMapper.readValue(anomaliesLogJson, new TypeReference<List<Map<String, Object>>>() {});
         }
+        throw new RuntimeException("Unable to generate unique inspection numbers for the batch");
     }
 
     // Helper: generate a unique inspection number
@@ -689,53 +971,44 @@ public class InspectionService {
      * Check whether an inspectionNumber already exists in the Supabase table.
      */
     private boolean existsInspectionNumber(String inspectionNumber) throws IOException {
-        String url = supabaseUrl + "/rest/v1/inspections?inspectionNumber=eq." + inspectionNumber + "&select=inspectionNumber&limit=1";
-        HttpHeaders headers = getHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            List<Map<String, Object>> list = objectMapper.readValue(response.getBody(), new TypeReference<List<Map<String, Object>>>() {});
+            ResponseEntity<String> response = supabaseClient.get("inspections?inspectionNumber=eq." + inspectionNumber + "&select=inspectionNumber&limit=1");
+            List<Map<String, Object>> list = Json.ROWS.readValue(response.getBody());
             return !list.isEmpty();
         } catch (HttpClientErrorException.NotFound e) {
             return false;
         }
     }
 
-    // Helper: create a log entry for an anomaly
-    private Map<String, Object> createAnomalyLogEntry(String id, Object box, String madeBy, String className, Double confidence, String action) {
-        Map<String, Object> logEntry = new LinkedHashMap<>(); // Use LinkedHashMap to preserve order
-        logEntry.put("id", id != null ? id : "");
-        logEntry.put("box", box != null ? box : new ArrayList<>());
-        logEntry.put("confidence", confidence != null ? confidence : 0.0);
-        logEntry.put("class", className != null ? className : ""); // Use "class" instead of "className"
-        logEntry.put("timestamp", new Date().toInstant().toString()); // Use ISO-8601 string format
-        logEntry.put("madeBy", madeBy != null ? madeBy : ""); // Use "madeBy" with capital B
-        logEntry.put("action", action != null ? action : ""); // Track if it was add/edit/delete
-
-        System.out.println("=== DEBUG: Created log entry ===");
-        System.out.println("Log entry: " + logEntry);
-
+    // Helper: create a log entry for an anomaly (package-private for AnomalyProcessingBenchmark)
+    static AnomalyLogEntry createAnomalyLogEntry(Detection anomaly, MadeBy madeBy, AnomalyLogEntry.Action action) {
+        AnomalyLogEntry logEntry = AnomalyLogEntry.of(anomaly, madeBy, action);
+        ANOMALY_DIAGNOSTICS.debug("log entry: {}", Diagnostics.payload(logEntry));
         return logEntry;
     }
 
-    // Helper: convert box coordinates from [x1, y1, x2, y2] to [x_center, y_center, width, height]
-    private void convertBoxCoordinates(Detection detection) {
+    // Helper: convert box coordinates from [x1, y1, x2, y2] to [x_center, y_center, width, height],
+    // first mapping them from the letterboxed image the detector saw back to the original (letterbox may be null)
+    static void convertBoxCoordinates(Detection detection, Letterbox letterbox) {
         if (detection == null || detection.getBox() == null) {
             return;
         }
 
-        List<Double> box = detection.getBox();
-        if (box.size() != 4) {
+        double[] box = detection.getBox();
+        if (box.length != 4) {
             return; // Invalid box format, skipping
         }
 
-        double x1 = box.get(0);
-        double y1 = box.get(1);
-        double x2 = box.get(2);
-        double y2 = box.get(3);
-
-        System.out.println("=== DEBUG: Converting box coordinates ===");
-        System.out.println("Original format [x1, y1, x2, y2]: [" + x1 + ", " + y1 + ", " + x2 + ", " + y2 + "]");
+        double x1 = box[0];
+        double y1 = box[1];
+        double x2 = box[2];
+        double y2 = box[3];
+        if (letterbox != null) {
+            x1 = letterbox.toSourceX(x1);
+            y1 = letterbox.toSourceY(y1);
+            x2 = letterbox.toSourceX(x2);
+            y2 = letterbox.toSourceY(y2);
+        }
 
         // Calculate center_x, center_y, width, height
         double centerX = (x1 + x2) / 2.0;
@@ -743,9 +1016,14 @@ public class InspectionService {
         double width = Math.abs(x2 - x1);
         double height = Math.abs(y2 - y1);
 
-        System.out.println("Converted format [x_center, y_center, width, height]: [" + centerX + ", " + centerY + ", " + width + ", " + height + "]");
-
         // Set the new box coordinates: [x_center, y_center, width, height]
-        detection.setBox(Arrays.asList(centerX, centerY, width, height));
+        box[0] = centerX;
+        box[1] = centerY;
+        box[2] = width;
+        box[3] = height;
+        if (BOX_DIAGNOSTICS.isEnabled()) {
+            BOX_DIAGNOSTICS.debug("box [x1, y1, x2, y2] = [{}, {}, {}, {}] -> [x_center, y_center, width, height] = {}",
+                    x1, y1, x2, y2, Arrays.toString(box));
+        }
     }
 }
@@ -0,0 +1,11 @@
+package com.example.transformer_app.service;
+
+/**
+ * Thrown when the analysis job queue is at capacity; nothing has been stored for the rejected request.
+ */
+public class JobQueueFullException extends RuntimeException {
+
+    public JobQueueFullException(int capacity) {
+        super("Analysis queue is full (" + capacity + " jobs pending), retry later");
+    }
+}
@@ -1,13 +1,13 @@
 package com.example.transformer_app.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.transformer_app.client.Keyset;
+import com.example.transformer_app.client.SupabaseClient;
+import com.example.transformer_app.config.Json;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.*;
@@ -15,18 +15,11 @@ import java.util.*;
 @Service
 public class MaintenanceService {
 
-    @Value("${supabase.url}")
-    private String supabaseUrl;
-
-    @Value("${supabase.apikey}")
-    private String supabaseApiKey;
-
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SupabaseClient supabaseClient;
 
     @Autowired
-    public MaintenanceService(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    public MaintenanceService(SupabaseClient supabaseClient) {
+        this.supabaseClient = supabaseClient;
     }
 
     // Create a new maintenance record
@@ -41,10 +34,6 @@ public class MaintenanceService {
         // Generate unique maintenance number
         String maintenanceNumber = generateUniqueMaintenanceNumber();
 
-        HttpHeaders headers = getHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("Prefer", "return=representation");
-
         Map<String, Object> body = new HashMap<>();
         body.put("maintenanceNumber", maintenanceNumber);
         body.put("inspectionNumber", inspectionNumber);
@@ -55,19 +44,17 @@ public class MaintenanceService {
         body.put("additionalRemarks", additionalRemarks);
         // Don't set created_at - let Supabase handle it with DEFAULT
 
-        String url = supabaseUrl + "/rest/v1/maintenance";
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-
-        return restTemplate.exchange(url, HttpMethod.POST, requestEntity, String.class);
+        return supabaseClient.post("maintenance", body);
     }
 
-    // Get all maintenance records
-    public ResponseEntity<String> getAllMaintenance() {
-        String url = supabaseUrl + "/rest/v1/maintenance?select=*&order=created_at.desc";
-        HttpHeaders headers = getHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
+    // Get all maintenance records (streamed straight from Supabase)
+    public ResponseEntity<StreamingResponseBody> getAllMaintenance(String acceptEncoding) throws IOException {
+        return supabaseClient.stream("maintenance?select=*&order=created_at.desc", acceptEncoding);
+    }
 
-        return restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+    // Get one keyset page of maintenance records, newest first
+    public ResponseEntity<String> getMaintenancePage(Integer limit, String after) throws IOException {
+        return supabaseClient.getPage("maintenance", null, Keyset.MAINTENANCE, limit, after);
     }
 
     // Get maintenance record by ID
@@ -77,7 +64,7 @@ public class MaintenanceService {
             throw new RuntimeException("Maintenance record with MID " + mid + " not found");
         }
 
-        String json = objectMapper.writeValueAsString(maintenance);
+        String json = Json.WRITER.writeValueAsString(maintenance);
         return ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(json);
@@ -85,11 +72,12 @@ public class MaintenanceService {
 
     // Get maintenance records by inspection number
     public ResponseEntity<String> getMaintenanceByInspectionNumber(String inspectionNumber) {
-        String url = supabaseUrl + "/rest/v1/maintenance?inspectionNumber=eq." + inspectionNumber + "&select=*&order=created_at.desc";
-        HttpHeaders headers = getHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
+        return supabaseClient.get("maintenance?inspectionNumber=eq." + inspectionNumber + "&select=*&order=created_at.desc");
+    }
 
-        return restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+    // Get one keyset page of maintenance records for an inspection, newest first
+    public ResponseEntity<String> getMaintenancePageByInspectionNumber(String inspectionNumber, Integer limit, String after) throws IOException {
+        return supabaseClient.getPage("maintenance", "inspectionNumber=eq." + inspectionNumber, Keyset.MAINTENANCE, limit, after);
     }
 
     // Update maintenance record
@@ -106,10 +94,6 @@ public class MaintenanceService {
             throw new RuntimeException("Maintenance record with MID " + mid + " not found");
         }
 
-        HttpHeaders headers = getHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("Prefer", "return=representation");
-
         Map<String, Object> updateFields = new HashMap<>();
         if (inspectorName != null) updateFields.put("inspectorName", inspectorName);
         if (status != null) updateFields.put("status", status);
@@ -117,10 +101,7 @@ public class MaintenanceService {
         if (recommendedActions != null) updateFields.put("recommendedActions", recommendedActions);
         if (additionalRemarks != null) updateFields.put("additionalRemarks", additionalRemarks);
 
-        String url = supabaseUrl + "/rest/v1/maintenance?mid=eq." + mid;
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(updateFields, headers);
-
-        return restTemplate.exchange(url, HttpMethod.PATCH, requestEntity, String.class);
+        return supabaseClient.patch("maintenance?mid=eq." + mid, updateFields);
     }
 
     // Delete maintenance record
@@ -130,22 +111,14 @@ public class MaintenanceService {
             throw new RuntimeException("Maintenance record with MID " + mid + " not found");
         }
 
-        String url = supabaseUrl + "/rest/v1/maintenance?mid=eq." + mid;
-        HttpHeaders headers = getHeaders();
-        HttpEntity<String> requestEntity = new HttpEntity<>(headers);
-
-        return restTemplate.exchange(url, HttpMethod.DELETE, requestEntity, String.class);
+        return supabaseClient.delete("maintenance?mid=eq." + mid);
     }
 
     // Helper method to get maintenance by ID internally
     private Map<String, Object> getMaintenanceByIdInternal(Long mid) throws IOException {
-        String url = supabaseUrl + "/rest/v1/maintenance?mid=eq." + mid + "&select=*&limit=1";
-        HttpHeaders headers = getHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            List<Map<String, Object>> maintenanceList = objectMapper.readValue(response.getBody(), new TypeReference<List<Map<String, Object>>>() {});
+            ResponseEntity<String> response = supabaseClient.get("maintenance?mid=eq." + mid + "&select=*&limit=1");
+            List<Map<String, Object>> maintenanceList = Json.ROWS.readValue(response.getBody());
             return maintenanceList.isEmpty() ? null : maintenanceList.get(0);
         } catch (HttpClientErrorException.NotFound e) {
             return null;
@@ -170,23 +143,12 @@ public class MaintenanceService {
 
     // Check if maintenance number exists
     private boolean existsMaintenanceNumber(String maintenanceNumber) throws IOException {
-        String url = supabaseUrl + "/rest/v1/maintenance?maintenanceNumber=eq." + maintenanceNumber + "&select=maintenanceNumber&limit=1";
-        HttpHeaders headers = getHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            List<Map<String, Object>> list = objectMapper.readValue(response.getBody(), new TypeReference<List<Map<String, Object>>>() {});
+            ResponseEntity<String> response = supabaseClient.get("maintenance?maintenanceNumber=eq." + maintenanceNumber + "&select=maintenanceNumber&limit=1");
+            List<Map<String, Object>> list = Json.ROWS.readValue(response.getBody());
             return !list.isEmpty();
         } catch (HttpClientErrorException.NotFound e) {
             return false;
         }
     }
-
-    private HttpHeaders getHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("apikey", supabaseApiKey);
-        headers.set("Authorization", "Bearer " + supabaseApiKey);
-        return headers;
-    }
 }
@@ -0,0 +1,166 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.client.SupabaseClient;
+import com.example.transformer_app.config.Json;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of transformer rows, looked up by id or by transformerNumber. Transformers rarely change,
+ * so rows are kept for transformers.cache.ttl-ms (bounded by transformers.cache.max-entries per key kind).
+ * Writes through TransformerService invalidate both keys; changes made elsewhere show up once the TTL expires.
+ * Cached rows are unmodifiable; callers copy them before adding fields. Missing transformers are not cached.
+ * A read that overlaps an invalidate returns its row but does not cache it, since it may predate the write.
+ */
+@Component
+public class TransformerCache implements MeterBinder {
+
+    private final SupabaseClient supabaseClient;
+    private final Cache<Long, Map<String, Object>> byId;
+    private final Cache<String, Map<String, Object>> byNumber;
+
+    // Bumped by every invalidate; a read started under an older generation is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public TransformerCache(
+            SupabaseClient supabaseClient,
+            @Value("${transformers.cache.max-entries:1000}") long maxEntries,
+            @Value("${transformers.cache.ttl-ms:600000}") long ttlMs
+    ) {
+        this.supabaseClient = supabaseClient;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        this.byNumber = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return the transformer row, or null if there is none with this id
+     */
+    public Map<String, Object> getById(Long id) throws IOException {
+        Map<String, Object> row = byId.getIfPresent(id);
+        if (row == null) {
+            row = fetch("id=eq." + id);
+        }
+        return row;
+    }
+
+    /**
+     * @return the transformer row, or null if there is none with this transformerNumber
+     */
+    public Map<String, Object> getByTransformerNumber(String transformerNumber) throws IOException {
+        Map<String, Object> row = byNumber.getIfPresent(transformerNumber);
+        if (row == null) {
+            row = fetch("transformerNumber=eq." + transformerNumber);
+        }
+        return row;
+    }
+
+    /**
+     * Drops the cached row under either key; both may be null.
+     */
+    public void invalidate(Long id, String transformerNumber) {
+        // Before the removals, so a read finishing in between sees it (see cacheIfCurrent)
+        generation.incrementAndGet();
+        if (id != null) {
+            Map<String, Object> row = byId.getIfPresent(id);
+            byId.invalidate(id);
+            if (row != null && row.get("transformerNumber") != null) {
+                byNumber.invalidate(row.get("transformerNumber").toString());
+            }
+        }
+        if (transformerNumber != null) {
+            Map<String, Object> row = byNumber.getIfPresent(transformerNumber);
+            byNumber.invalidate(transformerNumber);
+            Long cachedId = row != null ? idOf(row) : null;
+            if (cachedId != null) {
+                byId.invalidate(cachedId);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("byId", stats(byId));
+        stats.put("byTransformerNumber", stats(byNumber));
+        return stats;
+    }
+
+    // cache.gets{result=hit|miss}, cache.size, cache.evictions... tagged cache=transformersById / transformersByNumber
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, byId, "transformersById");
+        CaffeineCacheMetrics.monitor(registry, byNumber, "transformersByNumber");
+    }
+
+    // One select=* round trip; the row is cached under both of its keys
+    private Map<String, Object> fetch(String filter) throws IOException {
+        long readGeneration = generation.get();
+        List<Map<String, Object>> rows;
+        try {
+            ResponseEntity<String> response = supabaseClient.get("transformers?" + filter + "&select=*&limit=1");
+            rows = Json.ROWS.readValue(response.getBody());
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
+        }
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Object> row = Collections.unmodifiableMap(rows.get(0));
+        Long id = idOf(row);
+        if (id != null) {
+            cacheIfCurrent(byId, id, row, readGeneration);
+        }
+        if (row.get("transformerNumber") != null) {
+            cacheIfCurrent(byNumber, row.get("transformerNumber").toString(), row, readGeneration);
+        }
+        return row;
+    }
+
+    // The generation is compared under the entry's lock, so an invalidate either sees the row and removes it
+    // or has already bumped the generation and the row is not stored
+    private <K> void cacheIfCurrent(Cache<K, Map<String, Object>> cache, K key, Map<String, Object> row, long readGeneration) {
+        cache.asMap().compute(key, (k, cached) -> generation.get() == readGeneration ? row : cached);
+    }
+
+    private static Long idOf(Map<String, Object> row) {
+        Object id = row.get("id");
+        return id instanceof Number ? ((Number) id).longValue() : null;
+    }
+
+    private static Map<String, Object> stats(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+}
@@ -1,36 +1,33 @@
 // src/main/java/com/example/transformer_app/service/TransformerService.java
 package com.example.transformer_app.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.beans.factory.annotation.Value;
+import com.example.transformer_app.client.SupabaseClient;
+import com.example.transformer_app.config.Json;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 @Service
 public class TransformerService {
 
-    @Value("${supabase.url}")
-    private String supabaseUrl;
+    private final SupabaseClient supabaseClient;
+    private final ImageVariantService imageVariantService;
+    private final TransformerCache transformerCache;
 
-    @Value("${supabase.apikey}")
-    private String supabaseApiKey;
-
-    @Value("${supabase.bucket.name}")
-    private String bucketName;
-
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    public TransformerService(SupabaseClient supabaseClient, ImageVariantService imageVariantService,
+                              TransformerCache transformerCache) {
+        this.supabaseClient = supabaseClient;
+        this.imageVariantService = imageVariantService;
+        this.transformerCache = transformerCache;
+    }
 
     /**
      * Creates a transformer. The image can be null or empty.
@@ -55,10 +52,6 @@ public class TransformerService {
             imageUrl = uploadImage(baselineImage);
         }
 
-        HttpHeaders dbHeaders = getHeaders();
-        dbHeaders.setContentType(MediaType.APPLICATION_JSON);
-        dbHeaders.set("Prefer", "return=representation");
-
         Map<String, Object> body = new HashMap<>();
         body.put("transformerNumber", transformerNumber);
         body.put("poleNumber", poleNumber);
@@ -74,11 +67,11 @@ public class TransformerService {
         }
 
         body.put("baselineImage", imageUrl);
+        imageVariantService.putVariantUrls(body, "baselineImage", imageUrl);
 
-        String dbUrl = supabaseUrl + "/rest/v1/transformers";
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(body, dbHeaders);
-
-        return restTemplate.exchange(dbUrl, HttpMethod.POST, requestEntity, String.class);
+        ResponseEntity<String> response = supabaseClient.post("transformers", body);
+        transformerCache.invalidate(null, transformerNumber);
+        return response;
     }
 
     /**
@@ -99,35 +92,24 @@ public class TransformerService {
         }
 
         // Prepare the updated record with all existing fields plus new image
-        HttpHeaders dbHeaders = getHeaders();
-        dbHeaders.setContentType(MediaType.APPLICATION_JSON);
-        dbHeaders.set("Prefer", "return=representation");
-
         Map<String, Object> updatedBody = new HashMap<>(existingTransformer);
         updatedBody.put("baselineImage", imageUrl);
+        imageVariantService.putVariantUrls(updatedBody, "baselineImage", imageUrl);
 
         // Use PUT to update the entire record
-        String dbUrl = supabaseUrl + "/rest/v1/transformers?id=eq." + id;
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(updatedBody, dbHeaders);
-
-        return restTemplate.exchange(dbUrl, HttpMethod.PUT, requestEntity, String.class);
+        try {
+            return supabaseClient.put("transformers?id=eq." + id, updatedBody);
+        } finally {
+            transformerCache.invalidate(id, (String) existingTransformer.get("transformerNumber"));
+        }
     }
 
     /**
-     * Fetches a single transformer by its ID.
+     * Fetches a single transformer by its ID (through TransformerCache).
      * @return A map representing the transformer, or null if not found.
      */
     private Map<String, Object> getTransformerById(Long id) throws IOException {
-        String url = supabaseUrl + "/rest/v1/transformers?id=eq." + id + "&select=*&limit=1";
-        HttpHeaders headers = getHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-        try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            List<Map<String, Object>> transformerList = objectMapper.readValue(response.getBody(), new TypeReference<List<Map<String, Object>>>() {});
-            return transformerList.isEmpty() ? null : transformerList.get(0);
-        } catch (HttpClientErrorException.NotFound e) {
-            return null;
-        }
+        return transformerCache.getById(id);
     }
 
 
@@ -136,45 +118,17 @@ public class TransformerService {
      * @return The public URL of the uploaded file.
      */
     public String uploadImage(MultipartFile file) throws IOException {
-        String originalFileName = file.getOriginalFilename();
-        String sanitizedFileName = (originalFileName == null) ? "file" : originalFileName.replaceAll("[^a-zA-Z0-9.\\-_]", "_");
-        String fileName = UUID.randomUUID().toString() + "_" + sanitizedFileName;
-
-        HttpHeaders storageHeaders = getHeaders();
-        storageHeaders.setContentType(MediaType.parseMediaType(file.getContentType()));
-
-        HttpEntity<byte[]> storageRequestEntity = new HttpEntity<>(file.getBytes(), storageHeaders);
-
-        String storageUrl = UriComponentsBuilder.fromHttpUrl(supabaseUrl)
-                .path("/storage/v1/object/")
-                .pathSegment(bucketName, "baselineImages", fileName)
-                .toUriString();
-
-        restTemplate.exchange(storageUrl, HttpMethod.POST, storageRequestEntity, String.class);
-
-        return supabaseUrl + "/storage/v1/object/public/" + bucketName + "/baselineImages/" + fileName;
-    }
-
-    /**
-     * Creates and returns a HttpHeaders object with the required Supabase authentication headers.
-     */
-    private HttpHeaders getHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("apikey", supabaseApiKey);
-        headers.set("Authorization", "Bearer " + supabaseApiKey);
-        return headers;
+        return imageVariantService.store("transformers", "baselineImage", "baselineImages",
+                file.getBytes(), file.getOriginalFilename(), file.getContentType());
     }
 
     /**
      * Check whether a transformerNumber already exists in the Supabase table.
      */
     private boolean existsTransformerNumber(String transformerNumber) throws IOException {
-        String url = supabaseUrl + "/rest/v1/transformers?transformerNumber=eq." + transformerNumber + "&select=transformerNumber&limit=1";
-        HttpHeaders headers = getHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            List<Map<String, Object>> list = objectMapper.readValue(response.getBody(), new TypeReference<List<Map<String, Object>>>() {});
+            ResponseEntity<String> response = supabaseClient.get("transformers?transformerNumber=eq." + transformerNumber + "&select=transformerNumber&limit=1");
+            List<Map<String, Object>> list = Json.ROWS.readValue(response.getBody());
             return !list.isEmpty();
         } catch (HttpClientErrorException.NotFound e) {
             return false;
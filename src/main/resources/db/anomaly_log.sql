@@ -0,0 +1,16 @@
+-- Append-only anomaly log read and written by AnomalyLogService (GET /api/inspections/{iid}/anomalies/log).
+-- Run once in the Supabase SQL editor before deploying, then db/anomaly_log_backfill.sql for older entries.
+create table if not exists anomaly_log (
+    lid bigserial primary key,
+    iid bigint references inspections(iid),
+    id text,
+    box jsonb,
+    confidence double precision,
+    class text,
+    "timestamp" text,
+    "madeBy" text,
+    action text
+);
+
+-- Keyset pages of one inspection's log (iid=eq.X order by lid)
+create index if not exists anomaly_log_iid_lid_idx on anomaly_log (iid, lid);
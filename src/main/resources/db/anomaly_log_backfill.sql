@@ -0,0 +1,24 @@
+-- Moves the log entries kept in inspections."anomaliesLog" (before the anomaly_log table existed)
+-- into anomaly_log, keeping their order, then empties the old column. Run once in the Supabase SQL editor,
+-- after db/anomaly_log.sql has created the table; afterwards set anomalies.legacy-log.merge=false.
+begin;
+
+insert into anomaly_log (iid, id, box, confidence, class, timestamp, "madeBy", action)
+select i.iid,
+       e.entry ->> 'id',
+       e.entry -> 'box',
+       (e.entry ->> 'confidence')::double precision,
+       e.entry ->> 'class',
+       e.entry ->> 'timestamp',
+       e.entry ->> 'madeBy',
+       e.entry ->> 'action'
+from inspections i
+cross join lateral jsonb_array_elements(i."anomaliesLog") with ordinality as e(entry, n)
+where jsonb_typeof(i."anomaliesLog") = 'array'
+order by i.iid, e.n;
+
+update inspections
+set "anomaliesLog" = '[]'::jsonb
+where jsonb_typeof("anomaliesLog") = 'array' and "anomaliesLog" <> '[]'::jsonb;
+
+commit;
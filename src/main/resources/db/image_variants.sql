@@ -0,0 +1,9 @@
+-- Thumbnail and medium variant URLs written by ImageVariantService next to refImage and baselineImage.
+-- Run once in the Supabase SQL editor, then set images.variants.enabled=true.
+alter table inspections
+    add column if not exists "refImageThumbnail" text,
+    add column if not exists "refImageMedium" text;
+
+alter table transformers
+    add column if not exists "baselineImageThumbnail" text,
+    add column if not exists "baselineImageMedium" text;
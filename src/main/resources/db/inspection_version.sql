@@ -0,0 +1,4 @@
+-- Row version for optimistic concurrency on anomaly and reference-image edits (see anomalies.merge-retries).
+-- Every write through InspectionService.mutateAnomalies is conditional on this column and bumps it.
+-- Run once in the Supabase SQL editor before deploying.
+alter table inspections add column if not exists version bigint not null default 0;
@@ -0,0 +1,101 @@
+package com.example.transformer_app.client;
+
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.dto.AnomalySnapshot;
+import com.example.transformer_app.dto.Detection;
+import com.example.transformer_app.dto.ImageAnalysisResult;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a detector answer and of an inspection row with its anomalies: the previous code paths
+ * (tree + convertValue, fresh ObjectMapper, untyped maps) against the shared readers and streaming parsers.
+ * Run with: mvn -Pbenchmarks test -Djmh.includes=JsonParsingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonParsingBenchmark {
+
+	private static final ObjectReader SNAPSHOTS = Json.reader(new TypeReference<List<AnomalySnapshot>>() {});
+
+	@Param({"10", "200"})
+	private int detections;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private String lambdaResponse;
+	private String inspectionRow;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		StringBuilder boxes = new StringBuilder();
+		StringBuilder anomalies = new StringBuilder();
+		for (int i = 0; i < detections; i++) {
+			String box = String.format(Locale.ROOT, "[%.3f,%.3f,%.3f,%.3f]", random.nextDouble() * 640,
+					random.nextDouble() * 640, random.nextDouble() * 640, random.nextDouble() * 640);
+			String separator = i > 0 ? "," : "";
+			boxes.append(separator).append("{\"box\":").append(box).append(",\"class\":\"hotspot\",\"confidence\":")
+					.append(random.nextDouble()).append('}');
+			anomalies.append(separator).append("{\"id\":\"").append(i).append("\",\"box\":").append(box)
+					.append(",\"class\":\"hotspot\",\"confidence\":").append(random.nextDouble()).append(",\"madeBy\":\"AI\"}");
+		}
+		lambdaResponse = "{\"imageUrl\":\"\",\"detections\":[" + boxes + "]}";
+		inspectionRow = "[{\"iid\":1,\"transformerNumber\":\"T-000001\",\"inspectionNumber\":\"I-000001\","
+				+ "\"refImage\":\"https://example.com/a.jpg\",\"version\":3,\"anomalies\":[" + anomalies + "],\"anomaliesLog\":[]}]";
+	}
+
+	@Benchmark
+	public List<Detection> lambdaResponseTreeAndConvert() throws IOException {
+		JsonNode result = objectMapper.readTree(lambdaResponse);
+		return objectMapper.convertValue(result.get("detections"), new TypeReference<List<Detection>>() {});
+	}
+
+	@Benchmark
+	public ImageAnalysisResult lambdaResponseStreaming() throws IOException {
+		return LambdaResponse.parse(lambdaResponse);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> inspectionRowNewMapper() throws IOException {
+		return new ObjectMapper().readValue(inspectionRow, new TypeReference<List<Map<String, Object>>>() {});
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> inspectionRowMaps() throws IOException {
+		return objectMapper.readValue(inspectionRow, new TypeReference<List<Map<String, Object>>>() {});
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> inspectionRowSharedReader() throws IOException {
+		return Json.ROWS.readValue(inspectionRow);
+	}
+
+	@Benchmark
+	public List<AnomalySnapshot> inspectionRowTyped() throws IOException {
+		return SNAPSHOTS.readValue(inspectionRow);
+	}
+}
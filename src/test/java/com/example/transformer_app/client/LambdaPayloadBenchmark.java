@@ -0,0 +1,67 @@
+package com.example.transformer_app.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Lambda request body written to the connection: the old Base64 String in a HashMap, serialized by the
+ * message converter, against the streamed LambdaPayload. Compare gc.alloc.rate.norm (bytes per request):
+ * the old path holds the Base64 text several times over, the streamed one only Jackson's fixed-size buffers.
+ * Run with: mvn -Pbenchmarks test -Djmh.includes=LambdaPayloadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LambdaPayloadBenchmark {
+
+	@Param({"1", "10"})
+	private int imageMb;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final OutputStream connection = OutputStream.nullOutputStream();
+	private byte[] image;
+
+	@Setup
+	public void setUp() {
+		image = new byte[imageMb * 1024 * 1024 - 1];
+		new Random(42).nextBytes(image);
+	}
+
+	@Benchmark
+	public void oldPayload() throws IOException {
+		Map<String, Object> payload = new HashMap<>();
+		payload.put("image", Base64.getEncoder().encodeToString(image));
+		payload.put("threshold", 0.1);
+		payload.put("iou_threshold", 0.2);
+		connection.write(objectMapper.writeValueAsBytes(payload));
+	}
+
+	@Benchmark
+	public void streamedPayload() throws IOException {
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(connection)) {
+			LambdaPayload.write(generator, image, 0.1, 0.2);
+		}
+	}
+}
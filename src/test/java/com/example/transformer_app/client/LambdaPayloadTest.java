@@ -0,0 +1,48 @@
+package com.example.transformer_app.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The streamed Lambda request body carries the same fields as the old Base64-String payload, and its
+ * precomputed content length is exact. Allocation per request is measured by LambdaPayloadBenchmark.
+ */
+class LambdaPayloadTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void streamedPayloadMatchesTheOldPayload() throws IOException {
+		// One length per residue mod 3: no padding, "==" and "="
+		for (int length : new int[] {999, 1000, 1001}) {
+			byte[] image = randomImage(length);
+
+			ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+			try (JsonGenerator generator = objectMapper.getFactory().createGenerator(streamed)) {
+				LambdaPayload.write(generator, image, 0.1, 0.2);
+			}
+
+			JsonNode json = objectMapper.readTree(streamed.toByteArray());
+			assertEquals(Base64.getEncoder().encodeToString(image), json.get("image").asText(), "image, length " + length);
+			assertEquals(0.1, json.get("threshold").asDouble());
+			assertEquals(0.2, json.get("iou_threshold").asDouble());
+			assertEquals(streamed.size(), LambdaPayload.contentLength(objectMapper.getFactory(), length, 0.1, 0.2),
+					"Content-Length, length " + length);
+		}
+	}
+
+	private static byte[] randomImage(int size) {
+		byte[] image = new byte[size];
+		new Random(42).nextBytes(image);
+		return image;
+	}
+}
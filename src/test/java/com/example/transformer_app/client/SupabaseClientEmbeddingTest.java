@@ -0,0 +1,88 @@
+package com.example.transformer_app.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpClientErrorException;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Embedded reads go out as one select=*,embed request; a missing relationship is detected once and then skipped.
+ */
+class SupabaseClientEmbeddingTest {
+
+	private static final String EMBEDDED_ROW = "[{\"iid\":1,\"transformerNumber\":\"T-000007\","
+			+ "\"transformers\":{\"baselineImage\":\"https://example.com/baseline.jpg\"}}]";
+	private static final String NO_RELATIONSHIP = "{\"code\":\"PGRST200\",\"message\":\"Could not find a relationship "
+			+ "between 'inspections' and 'transformers' in the schema cache\"}";
+	private static final String AMBIGUOUS_RELATIONSHIP = "{\"code\":\"PGRST201\",\"message\":\"Could not embed because "
+			+ "more than one relationship was found for 'transformers' and 'inspections'\"}";
+	// PGRST204 shares the PGRST20 prefix but is a missing column, not a missing relationship
+	private static final String UNKNOWN_COLUMN = "{\"code\":\"PGRST204\",\"message\":\"Could not find the 'baselineImage' "
+			+ "column of 'transformers' in the schema cache\"}";
+
+	private SupabaseClient supabaseClient;
+	private MockRestServiceServer server;
+
+	@BeforeEach
+	void setUp() {
+		supabaseClient = new SupabaseClient("http://localhost", "key", "bucket",
+				10, 10, 1000, 1000, 1000, 1000, 1000, 1000);
+		server = MockRestServiceServer.bindTo(supabaseClient.getRestTemplate()).build();
+	}
+
+	@Test
+	void embedsInOneRequest() {
+		server.expect(once(), requestTo(startsWith("http://localhost/rest/v1/inspections?select=*,transformers(baselineImage)&iid=eq.1")))
+				.andExpect(method(HttpMethod.GET))
+				.andRespond(withSuccess(EMBEDDED_ROW, MediaType.APPLICATION_JSON));
+
+		assertEquals(EMBEDDED_ROW, supabaseClient.getEmbedded("inspections", "transformers(baselineImage)", "iid=eq.1").getBody());
+		server.verify();
+	}
+
+	@Test
+	void missingRelationshipIsOnlyTriedOnce() {
+		server.expect(once(), requestTo(startsWith("http://localhost/rest/v1/inspections?select=*,transformers(baselineImage)")))
+				.andExpect(method(HttpMethod.GET))
+				.andRespond(withStatus(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON).body(NO_RELATIONSHIP));
+
+		assertNull(supabaseClient.getEmbedded("inspections", "transformers(baselineImage)", "iid=eq.1"));
+		assertNull(supabaseClient.getEmbedded("inspections", "transformers(baselineImage)", "iid=eq.2"));
+		server.verify();
+	}
+
+	@Test
+	void ambiguousRelationshipIsOnlyTriedOnce() {
+		server.expect(once(), requestTo(startsWith("http://localhost/rest/v1/transformers?select=*,inspections(*)")))
+				.andExpect(method(HttpMethod.GET))
+				.andRespond(withStatus(HttpStatus.MULTIPLE_CHOICES).contentType(MediaType.APPLICATION_JSON).body(AMBIGUOUS_RELATIONSHIP));
+
+		assertNull(supabaseClient.getEmbedded("transformers", "inspections(*)", "id=eq.7"));
+		assertNull(supabaseClient.getEmbedded("transformers", "inspections(*)", "id=eq.8"));
+		server.verify();
+	}
+
+	@Test
+	void otherBadRequestsAreNotTakenForAMissingRelationship() {
+		server.expect(once(), requestTo(startsWith("http://localhost/rest/v1/inspections?select=*,transformers(baselineImage)")))
+				.andExpect(method(HttpMethod.GET))
+				.andRespond(withStatus(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON).body(UNKNOWN_COLUMN));
+
+		assertThrows(HttpClientErrorException.BadRequest.class,
+				() -> supabaseClient.getEmbedded("inspections", "transformers(baselineImage)", "iid=eq.1"));
+		server.verify();
+	}
+}
@@ -0,0 +1,192 @@
+package com.example.transformer_app.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-loop load at a fixed request rate over a weighted mix of endpoints. Requests are started on schedule
+ * whether or not earlier ones have finished, and latency is measured from the scheduled start, so a stalled
+ * server shows up as latency rather than as a lower request rate.
+ */
+final class LoadGenerator {
+
+	static final class Endpoint {
+		private final String name;
+		private final int weight;
+		private final Supplier<HttpRequest> request;
+
+		Endpoint(String name, int weight, Supplier<HttpRequest> request) {
+			this.name = name;
+			this.weight = weight;
+			this.request = request;
+		}
+	}
+
+	private final List<Endpoint> endpoints;
+	private final int requestsPerSecond;
+	private final Duration warmup;
+	private final Duration duration;
+	private final ExecutorService callbacks = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "load-client");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final HttpClient client = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(5))
+			.executor(callbacks)
+			.build();
+
+	LoadGenerator(List<Endpoint> endpoints, int requestsPerSecond, Duration warmup, Duration duration) {
+		this.endpoints = endpoints;
+		this.requestsPerSecond = requestsPerSecond;
+		this.warmup = warmup;
+		this.duration = duration;
+	}
+
+	Report run() throws InterruptedException {
+		Endpoint[] schedule = schedule();
+		Map<String, Recorder> recorders = new LinkedHashMap<>();
+		for (Endpoint endpoint : endpoints) {
+			recorders.put(endpoint.name, new Recorder());
+		}
+
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+		long start = System.nanoTime();
+		long measureFrom = start + warmup.toNanos();
+		long end = measureFrom + duration.toNanos();
+		List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+		for (long i = 0; ; i++) {
+			long scheduled = start + i * intervalNanos;
+			if (scheduled >= end) {
+				break;
+			}
+			long wait = scheduled - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+
+			Endpoint endpoint = schedule[(int) (i % schedule.length)];
+			Recorder recorder = scheduled >= measureFrom ? recorders.get(endpoint.name) : null;
+			inFlight.add(client.sendAsync(endpoint.request.get(), HttpResponse.BodyHandlers.discarding())
+					.whenComplete((response, error) -> {
+						if (recorder != null) {
+							recorder.record(System.nanoTime() - scheduled, error == null && response.statusCode() < 400);
+						}
+					}));
+		}
+
+		try {
+			CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+		} catch (ExecutionException | TimeoutException e) {
+			// Failed requests are already counted; ones still running after a minute are left out
+		}
+		callbacks.shutdownNow();
+		return new Report(recorders, duration);
+	}
+
+	// Endpoints repeated by weight and interleaved, so every second of load has the same mix
+	private Endpoint[] schedule() {
+		List<Endpoint> slots = new ArrayList<>();
+		int maxWeight = endpoints.stream().mapToInt(e -> e.weight).max().orElse(0);
+		for (int round = 0; round < maxWeight; round++) {
+			for (Endpoint endpoint : endpoints) {
+				if (round < endpoint.weight) {
+					slots.add(endpoint);
+				}
+			}
+		}
+		return slots.toArray(new Endpoint[0]);
+	}
+
+	private static final class Recorder {
+		private long[] latencies = new long[1024];
+		private int count;
+		private int errors;
+
+		synchronized void record(long latencyNanos, boolean ok) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = latencyNanos;
+			if (!ok) {
+				errors++;
+			}
+		}
+
+		synchronized long[] sorted() {
+			long[] copy = Arrays.copyOf(latencies, count);
+			Arrays.sort(copy);
+			return copy;
+		}
+
+		synchronized int errors() {
+			return errors;
+		}
+	}
+
+	static final class Report {
+		private final Map<String, Recorder> recorders;
+		private final Duration duration;
+
+		private Report(Map<String, Recorder> recorders, Duration duration) {
+			this.recorders = recorders;
+			this.duration = duration;
+		}
+
+		double errorRate() {
+			long total = 0;
+			long errors = 0;
+			for (Recorder recorder : recorders.values()) {
+				total += recorder.sorted().length;
+				errors += recorder.errors();
+			}
+			return total == 0 ? 0 : (double) errors / total;
+		}
+
+		String format() {
+			StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%-28s %8s %9s %10s %10s %10s %8s%n",
+					"endpoint", "requests", "req/s", "p50 ms", "p99 ms", "max ms", "errors"));
+			double seconds = duration.toNanos() / 1e9;
+			for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+				long[] latencies = entry.getValue().sorted();
+				int errors = entry.getValue().errors();
+				table.append(String.format(Locale.ROOT, "%-28s %8d %9.1f %10.1f %10.1f %10.1f %7.2f%%%n",
+						entry.getKey(), latencies.length, latencies.length / seconds,
+						millis(percentile(latencies, 0.50)), millis(percentile(latencies, 0.99)),
+						millis(latencies.length > 0 ? latencies[latencies.length - 1] : 0),
+						latencies.length > 0 ? 100.0 * errors / latencies.length : 0));
+			}
+			return table.toString();
+		}
+
+		private static long percentile(long[] sorted, double quantile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(quantile * sorted.length) - 1;
+			return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+		}
+
+		private static double millis(long nanos) {
+			return nanos / 1e6;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.example.transformer_app.loadtest;
+
+import com.example.transformer_app.TransformerAppApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Offline end-to-end load test: starts the upstream stand-ins and the application pointed at them, drives the
+ * inspection endpoints at a fixed rate and prints throughput, p50/p99 latency and error rate per endpoint.
+ * Exits with status 1 when the overall error rate is above loadtest.max-error-rate.
+ *
+ * Run with: mvn -Pload-test test [-Dloadtest.rps=50 -Dloadtest.duration-s=60 -Dloadtest.lambda-latency-ms=400]
+ */
+public class LoadTestHarness {
+
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+	public static void main(String[] args) throws Exception {
+		int rps = Integer.getInteger("loadtest.rps", 20);
+		Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmup-s", 5L));
+		Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration-s", 30L));
+		double maxErrorRate = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01"));
+
+		try (UpstreamStandIns standIns = new UpstreamStandIns(
+				Long.getLong("loadtest.rest-latency-ms", 15L),
+				Long.getLong("loadtest.storage-latency-ms", 40L),
+				Long.getLong("loadtest.lambda-latency-ms", 250L),
+				Integer.getInteger("loadtest.detections", 20),
+				Integer.getInteger("loadtest.anomalies", 50));
+			 ConfigurableApplicationContext app = SpringApplication.run(TransformerAppApplication.class,
+					 "--server.port=0",
+					 "--spring.main.banner-mode=off",
+					 "--supabase.url=" + standIns.baseUrl(),
+					 "--supabase.apikey=load-test",
+					 "--lambda.url=" + standIns.baseUrl() + "/lambda",
+					 "--inference.client=json",
+					 // Every upload goes to storage and the detector instead of being served from a cache
+					 "--inference.cache.max-entries=0",
+					 "--storage.content-addressed=false",
+					 // No unmeasured background work: variant generation can't decode the stand-in's storage objects
+					 "--images.variants.enabled=false")) {
+
+			URI base = URI.create("http://127.0.0.1:" + ((WebServerApplicationContext) app).getWebServer().getPort());
+			List<LoadGenerator.Endpoint> endpoints = endpoints(base, standIns.anomalyId());
+
+			System.out.printf("Load test: %d req/s for %ds after %ds warm-up against %s%n",
+					rps, duration.toSeconds(), warmup.toSeconds(), base);
+			LoadGenerator.Report report = new LoadGenerator(endpoints, rps, warmup, duration).run();
+			System.out.print(report.format());
+
+			if (report.errorRate() > maxErrorRate) {
+				System.out.printf("Error rate %.2f%% is above the limit of %.2f%%%n",
+						report.errorRate() * 100, maxErrorRate * 100);
+				System.exit(1);
+			}
+		}
+		System.exit(0);
+	}
+
+	// Read-heavy mix with anomaly edits and a few image uploads
+	private static List<LoadGenerator.Endpoint> endpoints(URI base, String anomalyId) throws IOException {
+		String boundary = "load-test-boundary";
+		byte[] upload = multipart(boundary, jpeg(1280, 960));
+		String anomaly = "{\"box\":[120.0,80.0,24.0,18.0],\"class\":\"hotspot\",\"confidence\":0.9,\"madeBy\":\"User\"}";
+
+		return List.of(
+				new LoadGenerator.Endpoint("GET /inspections?limit", 4, () -> request(base, "/api/inspections?limit=25")
+						.GET().build()),
+				new LoadGenerator.Endpoint("GET /inspections/{iid}", 4, () -> request(base, "/api/inspections/1")
+						.GET().build()),
+				new LoadGenerator.Endpoint("GET /{iid}/anomalies", 3, () -> request(base, "/api/inspections/1/anomalies")
+						.GET().build()),
+				new LoadGenerator.Endpoint("PUT /{iid}/anomalies/{id}", 2, () -> request(base, "/api/inspections/1/anomalies/" + anomalyId)
+						.header("Content-Type", "application/json")
+						.PUT(HttpRequest.BodyPublishers.ofString(anomaly)).build()),
+				new LoadGenerator.Endpoint("POST /inspections", 1, () -> request(base, "/api/inspections")
+						.header("Content-Type", "multipart/form-data; boundary=" + boundary)
+						.POST(HttpRequest.BodyPublishers.ofByteArray(upload)).build()));
+	}
+
+	private static HttpRequest.Builder request(URI base, String pathAndQuery) {
+		return HttpRequest.newBuilder(base.resolve(pathAndQuery)).timeout(REQUEST_TIMEOUT);
+	}
+
+	private static byte[] multipart(String boundary, byte[] image) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 1024);
+		String[][] fields = {
+				{"transformerNumber", "AZ-8890"},
+				{"inspectionDate", "2025-08-01T09:30:00"},
+				{"maintainanceDate", "2025-09-01T09:30:00"},
+				{"status", "Pending"},
+				{"inspector", "Load Test"}
+		};
+		for (String[] field : fields) {
+			body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + field[0] + "\"\r\n\r\n"
+					+ field[1] + "\r\n").getBytes(StandardCharsets.UTF_8));
+		}
+		body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"refImage\"; filename=\"thermal.jpg\"\r\n"
+				+ "Content-Type: image/jpeg\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+		body.write(image);
+		body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+		return body.toByteArray();
+	}
+
+	// Smooth gradients with a few hot spots, so the JPEG is sized like a real thermal image
+	private static byte[] jpeg(int width, int height) throws IOException {
+		Random random = new Random(42);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int red = (x * 255 / width + random.nextInt(16)) & 0xff;
+				int blue = (y * 255 / height + random.nextInt(16)) & 0xff;
+				image.setRGB(x, y, (red << 16) | (64 << 8) | blue);
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpeg", out);
+		return out.toByteArray();
+	}
+}
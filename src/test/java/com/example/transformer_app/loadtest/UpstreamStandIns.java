@@ -0,0 +1,195 @@
+package com.example.transformer_app.loadtest;
+
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.service.BenchmarkFixtures;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-ins for the three upstreams, on one embedded HTTP server:
+ * PostgREST under /rest/v1/, Supabase Storage under /storage/v1/object/ and the detection Lambda under /lambda.
+ * Each answers from canned fixtures after its configured latency (plus up to 20% jitter).
+ */
+final class UpstreamStandIns implements AutoCloseable {
+
+	private static final int PAGE_ROWS = 25;
+	private static final int ALL_ROWS = 200;
+	private static final byte[] EMPTY_ARRAY = "[]".getBytes(StandardCharsets.UTF_8);
+
+	private final long restLatencyMs;
+	private final long storageLatencyMs;
+	private final long lambdaLatencyMs;
+
+	private final byte[] inspectionRow;
+	private final byte[] inspectionPage;
+	private final byte[] allInspections;
+	private final byte[] transformerRow;
+	private final byte[] lambdaResponse;
+	private final String anomalyId;
+
+	private final AtomicLong nextIid = new AtomicLong(1000);
+	private final AtomicLong version = new AtomicLong(1);
+	private final ExecutorService workers;
+	private final HttpServer server;
+
+	UpstreamStandIns(long restLatencyMs, long storageLatencyMs, long lambdaLatencyMs, int detections, int anomalies)
+			throws IOException {
+		this.restLatencyMs = restLatencyMs;
+		this.storageLatencyMs = storageLatencyMs;
+		this.lambdaLatencyMs = lambdaLatencyMs;
+
+		String row = BenchmarkFixtures.inspectionRow(anomalies, anomalies * 4, 42);
+		String rowObject = row.substring(1, row.length() - 1);
+		this.inspectionRow = row.getBytes(StandardCharsets.UTF_8);
+		this.inspectionPage = repeat(rowObject, PAGE_ROWS);
+		this.allInspections = repeat(rowObject, ALL_ROWS);
+		this.transformerRow = ("[{\"id\":1,\"transformerNumber\":\"AZ-8890\","
+				+ "\"baselineImage\":\"https://example.supabase.co/storage/v1/object/public/baselineImages/0001.jpg\"}]")
+				.getBytes(StandardCharsets.UTF_8);
+		this.lambdaResponse = BenchmarkFixtures.lambdaResponse(detections, 7).getBytes(StandardCharsets.UTF_8);
+
+		List<Map<String, Object>> rows = Json.ROWS.readValue(row);
+		@SuppressWarnings("unchecked")
+		List<Map<String, Object>> rowAnomalies = (List<Map<String, Object>>) rows.get(0).get("anomalies");
+		this.anomalyId = rowAnomalies.isEmpty() ? "missing" : (String) rowAnomalies.get(0).get("id");
+
+		this.workers = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "stand-in");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		server.createContext("/rest/v1/", this::rest);
+		server.createContext("/storage/v1/object/", this::storage);
+		server.createContext("/lambda", this::lambda);
+		server.setExecutor(workers);
+		server.start();
+	}
+
+	String baseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	// An anomaly id present in the canned inspection row, for the edit endpoint
+	String anomalyId() {
+		return anomalyId;
+	}
+
+	private void rest(HttpExchange exchange) throws IOException {
+		drain(exchange);
+		pause(restLatencyMs);
+
+		String path = exchange.getRequestURI().getPath();
+		String table = path.substring("/rest/v1/".length());
+		String query = exchange.getRequestURI().getRawQuery() != null ? exchange.getRequestURI().getRawQuery() : "";
+		String prefer = exchange.getRequestHeaders().getFirst("Prefer");
+
+		switch (exchange.getRequestMethod()) {
+			case "GET" -> {
+				if (table.equals("transformers")) {
+					respond(exchange, 200, transformerRow);
+				} else if (!table.equals("inspections") || query.contains("inspectionNumber=")) {
+					respond(exchange, 200, EMPTY_ARRAY);
+				} else if (query.contains("iid=eq.")) {
+					respond(exchange, 200, inspectionRow);
+				} else if (query.contains("limit=")) {
+					exchange.getResponseHeaders().set("Content-Range", "0-" + (PAGE_ROWS - 1) + "/" + ALL_ROWS);
+					respond(exchange, 200, inspectionPage);
+				} else {
+					respond(exchange, 200, allInspections);
+				}
+			}
+			case "POST" -> {
+				if (prefer != null && prefer.contains("return=minimal")) {
+					respond(exchange, 201, null);
+				} else {
+					respond(exchange, 201, ("[{\"iid\":" + nextIid.incrementAndGet() + ",\"version\":1}]")
+							.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			case "PATCH", "PUT" -> respond(exchange, 200, ("[{\"iid\":1,\"version\":" + version.incrementAndGet() + "}]")
+					.getBytes(StandardCharsets.UTF_8));
+			case "DELETE" -> respond(exchange, 204, null);
+			default -> respond(exchange, 405, null);
+		}
+	}
+
+	private void storage(HttpExchange exchange) throws IOException {
+		drain(exchange);
+		pause(storageLatencyMs);
+
+		switch (exchange.getRequestMethod()) {
+			// Nothing is stored, so existence checks always miss and every image is uploaded
+			case "HEAD" -> respond(exchange, 404, null);
+			case "GET" -> respond(exchange, 200, new byte[1024]);
+			case "POST", "PUT" -> respond(exchange, 200, ("{\"Key\":\"" + exchange.getRequestURI().getPath() + "\"}")
+					.getBytes(StandardCharsets.UTF_8));
+			default -> respond(exchange, 405, null);
+		}
+	}
+
+	private void lambda(HttpExchange exchange) throws IOException {
+		drain(exchange);
+		pause(lambdaLatencyMs);
+		respond(exchange, 200, lambdaResponse);
+	}
+
+	private static void drain(HttpExchange exchange) throws IOException {
+		try (InputStream body = exchange.getRequestBody()) {
+			body.transferTo(OutputStream.nullOutputStream());
+		}
+	}
+
+	private static void pause(long latencyMs) {
+		if (latencyMs <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(latencyMs + ThreadLocalRandom.current().nextLong(latencyMs / 5 + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		if (body == null || "HEAD".equals(exchange.getRequestMethod())) {
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static byte[] repeat(String rowObject, int times) {
+		StringBuilder json = new StringBuilder(rowObject.length() * times + times + 2).append('[');
+		for (int i = 0; i < times; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append(rowObject);
+		}
+		return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		workers.shutdownNow();
+	}
+}
@@ -0,0 +1,128 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.client.LambdaResponse;
+import com.example.transformer_app.client.Letterbox;
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.dto.AnomalyLogEntry;
+import com.example.transformer_app.dto.AnomalySnapshot;
+import com.example.transformer_app.dto.Detection;
+import com.example.transformer_app.dto.MadeBy;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-image and per-edit anomaly work of InspectionService: detector answer to converted Detections,
+ * log entry creation, and the anomaly write of an edit, both as the old whole-row rewrite (anomalies and
+ * anomaliesLog read and written back) and as the current versioned PATCH plus one appended log row.
+ * Run with: mvn -Pbenchmarks test -Djmh.includes=AnomalyProcessingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnomalyProcessingBenchmark {
+
+	private static final ObjectReader SNAPSHOTS = Json.reader(new TypeReference<List<AnomalySnapshot>>() {});
+	private static final ObjectReader LEGACY_ROWS = Json.reader(new TypeReference<List<LegacyRow>>() {});
+
+	@Param({"100", "500"})
+	private int detections;
+
+	@Param({"2000"})
+	private int logEntries;
+
+	private final Letterbox letterbox = new Letterbox(4000, 3000, 640);
+	private String lambdaResponse;
+	private String fullRow;
+	private String snapshotRow;
+	private List<Detection> converted;
+
+	@Setup
+	public void setUp() throws IOException {
+		lambdaResponse = BenchmarkFixtures.lambdaResponse(detections, 7);
+		fullRow = BenchmarkFixtures.inspectionRow(detections, logEntries, 42);
+		// What getAnomalySnapshot selects: iid,version,refImage,anomalies
+		snapshotRow = BenchmarkFixtures.inspectionRow(detections, 0, 42);
+		converted = lambdaResponseToDetections();
+	}
+
+	@Benchmark
+	public List<Detection> lambdaResponseToDetections() throws IOException {
+		List<Detection> result = LambdaResponse.parse(lambdaResponse).getDetections();
+		for (Detection detection : result) {
+			InspectionService.convertBoxCoordinates(detection, letterbox);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public void createAnomalyLogEntries(Blackhole blackhole) {
+		for (Detection detection : converted) {
+			blackhole.consume(InspectionService.createAnomalyLogEntry(detection, MadeBy.AI, AnomalyLogEntry.Action.ADD));
+		}
+	}
+
+	@Benchmark
+	public byte[] rewriteAnomaliesAndLog() throws IOException {
+		LegacyRow row = LEGACY_ROWS.<List<LegacyRow>>readValue(fullRow).get(0);
+		Detection edited = edit(row.anomalies);
+		row.anomaliesLog.add(InspectionService.createAnomalyLogEntry(edited, MadeBy.USER, AnomalyLogEntry.Action.EDIT));
+
+		Map<String, Object> body = new HashMap<>();
+		body.put("anomalies", row.anomalies);
+		body.put("anomaliesLog", row.anomaliesLog);
+		return Json.WRITER.writeValueAsBytes(body);
+	}
+
+	@Benchmark
+	public void patchAnomaliesAndAppendLog(Blackhole blackhole) throws IOException {
+		AnomalySnapshot snapshot = SNAPSHOTS.<List<AnomalySnapshot>>readValue(snapshotRow).get(0);
+		Detection edited = edit(snapshot.getAnomalies());
+		List<AnomalyLogEntry> newLogEntries = new ArrayList<>(1);
+		newLogEntries.add(InspectionService.createAnomalyLogEntry(edited, MadeBy.USER, AnomalyLogEntry.Action.EDIT));
+
+		Map<String, Object> body = new HashMap<>();
+		body.put("anomalies", snapshot.getAnomalies());
+		body.put("version", snapshot.getVersion() + 1);
+		blackhole.consume(Json.WRITER.writeValueAsBytes(body));
+		blackhole.consume(Json.WRITER.writeValueAsBytes(newLogEntries));
+	}
+
+	// Moves the middle anomaly a little, as a user dragging its box would
+	private static Detection edit(List<Detection> anomalies) {
+		Detection anomaly = anomalies.get(anomalies.size() / 2);
+		double[] box = anomaly.getBox();
+		anomaly.setBox(box[0] + 1, box[1] + 1, box[2], box[3]);
+		anomaly.setMadeBy(MadeBy.USER);
+		return anomaly;
+	}
+
+	// The inspection row as the old read-modify-write saw it
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class LegacyRow {
+		public List<Detection> anomalies;
+		public List<AnomalyLogEntry> anomaliesLog;
+	}
+}
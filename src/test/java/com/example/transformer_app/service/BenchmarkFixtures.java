@@ -0,0 +1,110 @@
+package com.example.transformer_app.service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic JSON in the shapes PostgREST and the detector Lambda return, sized like busy inspections,
+ * and thermal-camera-like JPEGs. Shared by the JMH suites, the load-test stand-ins and the image tests.
+ */
+public final class BenchmarkFixtures {
+
+	private static final String[] CLASSES = {"hotspot", "loose_joint", "overload", "point_overload", "wire_overload"};
+	private static final String[] ACTIONS = {"add", "edit", "delete"};
+
+	private BenchmarkFixtures() {
+	}
+
+	// {"imageUrl": ..., "detections": [{"box": [x1, y1, x2, y2], "class": ..., "confidence": ...}, ...]} in 640x640 input space
+	public static String lambdaResponse(int detections, long seed) {
+		Random random = new Random(seed);
+		StringBuilder json = new StringBuilder(detections * 96 + 64).append("{\"imageUrl\":\"\",\"detections\":[");
+		for (int i = 0; i < detections; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			double x1 = random.nextDouble() * 600;
+			double y1 = random.nextDouble() * 600;
+			json.append("{\"box\":").append(box(x1, y1, x1 + 4 + random.nextDouble() * 36, y1 + 4 + random.nextDouble() * 36))
+					.append(",\"class\":\"").append(CLASSES[random.nextInt(CLASSES.length)])
+					.append("\",\"confidence\":").append(random.nextDouble()).append('}');
+		}
+		return json.append("]}").toString();
+	}
+
+	// A one-element select=* answer for an inspection with its anomalies and legacy anomaliesLog array
+	public static String inspectionRow(int anomalies, int logEntries, long seed) {
+		Random random = new Random(seed);
+		StringBuilder json = new StringBuilder(anomalies * 128 + logEntries * 192 + 512)
+				.append("[{\"iid\":1,\"transformerNumber\":\"AZ-8890\",\"inspectionNumber\":\"000123\",")
+				.append("\"inspectionDate\":\"2025-08-01T09:30:00\",\"maintainanceDate\":\"2025-09-01T09:30:00\",")
+				.append("\"status\":\"Completed\",\"inspector\":\"A. Perera\",")
+				.append("\"refImage\":\"https://example.supabase.co/storage/v1/object/public/refImages/0001.jpg\",")
+				.append("\"refImageThumbnail\":\"https://example.supabase.co/storage/v1/object/public/refImages/0001_thumb.jpg\",")
+				.append("\"refImageMedium\":\"https://example.supabase.co/storage/v1/object/public/refImages/0001_medium.jpg\",")
+				.append("\"version\":42,\"anomalies\":[");
+		for (int i = 0; i < anomalies; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"id\":\"").append(id(random)).append("\",\"box\":").append(centredBox(random))
+					.append(",\"class\":\"").append(CLASSES[random.nextInt(CLASSES.length)])
+					.append("\",\"confidence\":").append(random.nextDouble())
+					.append(",\"madeBy\":\"").append(random.nextInt(4) == 0 ? "User" : "AI").append("\"}");
+		}
+		json.append("],\"anomaliesLog\":[");
+		for (int i = 0; i < logEntries; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"id\":\"").append(id(random)).append("\",\"box\":").append(centredBox(random))
+					.append(",\"confidence\":").append(random.nextDouble())
+					.append(",\"class\":\"").append(CLASSES[random.nextInt(CLASSES.length)])
+					.append("\",\"timestamp\":\"2025-08-01T09:").append(String.format(Locale.ROOT, "%02d:%02d.%03dZ",
+							i / 60 % 60, i % 60, random.nextInt(1000)))
+					.append("\",\"madeBy\":\"").append(random.nextInt(4) == 0 ? "User" : "AI")
+					.append("\",\"action\":\"").append(ACTIONS[random.nextInt(ACTIONS.length)]).append("\"}");
+		}
+		return json.append("]}]").toString();
+	}
+
+	// Smooth temperature gradient with a few hot spots and sensor noise, like a thermal camera frame
+	public static byte[] thermalJpeg(int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(7);
+		int[][] spots = {{width / 3, height / 2}, {2 * width / 3, height / 3}, {width / 2, 3 * height / 4}};
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				double heat = 0.3 * x / width + 0.2 * y / height;
+				for (int[] spot : spots) {
+					double dx = (x - spot[0]) / (width / 20.0);
+					double dy = (y - spot[1]) / (height / 20.0);
+					heat += 0.6 * Math.exp(-(dx * dx + dy * dy));
+				}
+				int level = (int) Math.max(0, Math.min(255, heat * 255 + random.nextGaussian() * 4));
+				image.setRGB(x, y, (level << 16) | ((level / 2) << 8) | (255 - level));
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpeg", out);
+		return out.toByteArray();
+	}
+
+	private static String id(Random random) {
+		return new UUID(random.nextLong(), random.nextLong()).toString();
+	}
+
+	private static String centredBox(Random random) {
+		return box(random.nextDouble() * 4000, random.nextDouble() * 3000, 10 + random.nextDouble() * 200,
+				10 + random.nextDouble() * 200);
+	}
+
+	private static String box(double a, double b, double c, double d) {
+		return String.format(Locale.ROOT, "[%.3f,%.3f,%.3f,%.3f]", a, b, c, d);
+	}
+}
@@ -0,0 +1,47 @@
+package com.example.transformer_app.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Letterboxing a thermal-like JPEG to the detector's 640x640 input (decode, scale, re-encode), which every
+ * upload pays before the Lambda call.
+ * Run with: mvn -Pbenchmarks test -Djmh.includes=ImagePreprocessorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImagePreprocessorBenchmark {
+
+	@Param({"1280x960", "4000x3000"})
+	private String size;
+
+	private final ImagePreprocessor preprocessor = new ImagePreprocessor(true, 640, "jpeg", 0.9f, Runnable::run);
+	private byte[] original;
+
+	@Setup
+	public void setUp() throws IOException {
+		String[] dimensions = size.split("x");
+		original = BenchmarkFixtures.thermalJpeg(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+	}
+
+	@Benchmark
+	public ImagePreprocessor.Prepared prepare() throws IOException {
+		return preprocessor.prepareNow(original);
+	}
+}
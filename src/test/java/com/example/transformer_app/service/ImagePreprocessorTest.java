@@ -0,0 +1,61 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.client.Letterbox;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pre-processed detector uploads: 640x640 and much smaller than a 4000x3000 thermal-like JPEG, plus the mapping
+ * of letterboxed boxes back to the original image. Pre-processing time is measured by ImagePreprocessorBenchmark.
+ */
+class ImagePreprocessorTest {
+
+	private final ImagePreprocessor preprocessor = new ImagePreprocessor(true, 640, "jpeg", 0.9f, Runnable::run);
+
+	@Test
+	void preprocessedUploadIsMuchSmallerThanFullSize() throws IOException {
+		byte[] original = BenchmarkFixtures.thermalJpeg(4000, 3000);
+
+		ImagePreprocessor.Prepared prepared = preprocessor.prepareNow(original);
+
+		BufferedImage sent = ImageIO.read(new ByteArrayInputStream(prepared.getBytes()));
+		assertNotNull(prepared.getLetterbox());
+		assertEquals(640, sent.getWidth());
+		assertEquals(640, sent.getHeight());
+		assertTrue(prepared.getBytes().length * 5 < original.length,
+				"pre-processed " + prepared.getBytes().length + " bytes vs " + original.length);
+	}
+
+	@Test
+	void smallImagesAreSentAsTheyAre() throws IOException {
+		byte[] original = BenchmarkFixtures.thermalJpeg(320, 240);
+
+		ImagePreprocessor.Prepared prepared = preprocessor.prepareNow(original);
+
+		assertSame(original, prepared.getBytes());
+		assertEquals(null, prepared.getLetterbox());
+	}
+
+	@Test
+	void letterboxedCoordinatesMapBackToTheOriginal() {
+		// 4000x3000 into 640: scale 0.16, image 640x480 padded by 80 above and below
+		Letterbox letterbox = new Letterbox(4000, 3000, 640);
+
+		assertEquals(0.0, letterbox.toSourceX(0), 1e-9);
+		assertEquals(0.0, letterbox.toSourceY(80), 1e-9);
+		assertEquals(2000.0, letterbox.toSourceX(320), 1e-9);
+		assertEquals(1500.0, letterbox.toSourceY(320), 1e-9);
+		assertEquals(3000.0, letterbox.toSourceY(560), 1e-9);
+		// Boxes reaching into the padding are clamped to the image
+		assertEquals(0.0, letterbox.toSourceY(10), 1e-9);
+	}
+}
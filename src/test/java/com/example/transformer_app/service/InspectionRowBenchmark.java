@@ -0,0 +1,61 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.config.Json;
+import com.example.transformer_app.dto.AnomalySnapshot;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a large select=* inspection row, as the ref-image update used to read it (untyped maps), against the
+ * typed snapshot the anomaly mutations read.
+ * Run with: mvn -Pbenchmarks test -Djmh.includes=InspectionRowBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InspectionRowBenchmark {
+
+	private static final ObjectReader SNAPSHOTS = Json.reader(new TypeReference<List<AnomalySnapshot>>() {});
+
+	@Param({"200", "500"})
+	private int anomalies;
+
+	@Param({"1000", "5000"})
+	private int logEntries;
+
+	private String row;
+
+	@Setup
+	public void setUp() {
+		row = BenchmarkFixtures.inspectionRow(anomalies, logEntries, 42);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> rowAsMaps() throws IOException {
+		return Json.ROWS.readValue(row);
+	}
+
+	@Benchmark
+	public List<AnomalySnapshot> rowAsSnapshot() throws IOException {
+		return SNAPSHOTS.readValue(row);
+	}
+}
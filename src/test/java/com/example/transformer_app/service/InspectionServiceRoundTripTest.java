@@ -0,0 +1,79 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.client.MockInferenceClient;
+import com.example.transformer_app.client.SupabaseClient;
+import com.example.transformer_app.dto.Detection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Runs the anomaly mutations against a local PostgREST stub and checks that each one costs
+ * exactly one read, one PATCH and one log insert (it used to be three GETs plus the PATCH).
+ */
+class InspectionServiceRoundTripTest {
+
+	private static final String INSPECTION_ROW = "[{\"iid\":1,\"anomalies\":[{\"id\":\"a1\",\"box\":[10.0,10.0,4.0,4.0],"
+			+ "\"className\":\"hotspot\",\"confidence\":0.9,\"madeBy\":\"AI\"}],\"anomaliesLog\":[]}]";
+
+	private InspectionService inspectionService;
+	private MockRestServiceServer server;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		SupabaseClient supabaseClient = new SupabaseClient("http://localhost", "key", "bucket",
+				10, 10, 1000, 1000, 1000, 1000, 1000, 1000);
+		server = MockRestServiceServer.bindTo(supabaseClient.getRestTemplate()).build();
+		inspectionService = new InspectionService(supabaseClient, new AnomalyLogService(supabaseClient), Runnable::run,
+				new InferenceCache(0, ""), new MockInferenceClient(0),
+				new ImagePreprocessor(false, 640, "jpeg", 0.9f, Runnable::run),
+				new ImageVariantService(supabaseClient, Runnable::run, false, 256, 1024, 0.85f));
+	}
+
+	private void expectOneReadAndOneWrite() {
+		server.expect(once(), requestTo(startsWith("http://localhost/rest/v1/inspections?iid=eq.1&")))
+				.andExpect(method(HttpMethod.GET))
+				.andRespond(withSuccess(INSPECTION_ROW, MediaType.APPLICATION_JSON));
+		server.expect(once(), requestTo(startsWith("http://localhost/rest/v1/inspections?iid=eq.1&version=")))
+				.andExpect(method(HttpMethod.PATCH))
+				.andRespond(withSuccess(INSPECTION_ROW, MediaType.APPLICATION_JSON));
+		server.expect(once(), requestTo("http://localhost/rest/v1/anomaly_log"))
+				.andExpect(method(HttpMethod.POST))
+				.andRespond(withSuccess());
+	}
+
+	@Test
+	void addAnomalyReadsOnce() throws Exception {
+		expectOneReadAndOneWrite();
+		Detection anomaly = new Detection();
+		anomaly.setBox(1.0, 2.0, 3.0, 4.0);
+		anomaly.setClassName("hotspot");
+		inspectionService.addAnomaly(1L, anomaly);
+		server.verify();
+	}
+
+	@Test
+	void updateAnomalyReadsOnce() throws Exception {
+		expectOneReadAndOneWrite();
+		Detection anomaly = new Detection();
+		anomaly.setBox(5.0, 6.0, 7.0, 8.0);
+		anomaly.setClassName("hotspot");
+		inspectionService.updateAnomaly(1L, "a1", anomaly);
+		server.verify();
+	}
+
+	@Test
+	void deleteAnomalyReadsOnce() throws Exception {
+		expectOneReadAndOneWrite();
+		inspectionService.deleteAnomaly(1L, "a1");
+		server.verify();
+	}
+}
@@ -0,0 +1,88 @@
+package com.example.transformer_app.service;
+
+import com.example.transformer_app.client.SupabaseClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.ExpectedCount.twice;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * One Supabase read per transformer until it is invalidated, whichever key it was read by.
+ */
+class TransformerCacheTest {
+
+	private static final String TRANSFORMER_ROW = "[{\"id\":7,\"transformerNumber\":\"T-000007\","
+			+ "\"baselineImage\":\"https://example.com/baseline.jpg\"}]";
+
+	private TransformerCache transformerCache;
+	private MockRestServiceServer server;
+
+	@BeforeEach
+	void setUp() {
+		SupabaseClient supabaseClient = new SupabaseClient("http://localhost", "key", "bucket",
+				10, 10, 1000, 1000, 1000, 1000, 1000, 1000);
+		server = MockRestServiceServer.bindTo(supabaseClient.getRestTemplate()).build();
+		transformerCache = new TransformerCache(supabaseClient, 100, 60_000);
+	}
+
+	@Test
+	void rowReadByIdIsServedForBothKeys() throws Exception {
+		server.expect(once(), requestTo(startsWith("http://localhost/rest/v1/transformers?id=eq.7&select=")))
+				.andExpect(method(HttpMethod.GET))
+				.andRespond(withSuccess(TRANSFORMER_ROW, MediaType.APPLICATION_JSON));
+
+		assertEquals("T-000007", transformerCache.getById(7L).get("transformerNumber"));
+		assertEquals("T-000007", transformerCache.getById(7L).get("transformerNumber"));
+		assertEquals("https://example.com/baseline.jpg",
+				transformerCache.getByTransformerNumber("T-000007").get("baselineImage"));
+		server.verify();
+	}
+
+	@Test
+	void invalidateForcesAFreshRead() throws Exception {
+		server.expect(twice(), requestTo(startsWith("http://localhost/rest/v1/transformers?transformerNumber=eq.T-000007&select=")))
+				.andExpect(method(HttpMethod.GET))
+				.andRespond(withSuccess(TRANSFORMER_ROW, MediaType.APPLICATION_JSON));
+
+		transformerCache.getByTransformerNumber("T-000007");
+		transformerCache.invalidate(7L, null);
+		transformerCache.getByTransformerNumber("T-000007");
+		server.verify();
+	}
+
+	@Test
+	void rowReadDuringAnInvalidateIsNotCached() throws Exception {
+		// The write (and its invalidate) lands while the read is in flight
+		server.expect(twice(), requestTo(startsWith("http://localhost/rest/v1/transformers?id=eq.7&select=")))
+				.andExpect(method(HttpMethod.GET))
+				.andRespond(request -> {
+					transformerCache.invalidate(7L, null);
+					return withSuccess(TRANSFORMER_ROW, MediaType.APPLICATION_JSON).createResponse(request);
+				});
+
+		transformerCache.getById(7L);
+		transformerCache.getById(7L);
+		server.verify();
+	}
+
+	@Test
+	void missingTransformerIsNotCached() throws Exception {
+		server.expect(twice(), requestTo(startsWith("http://localhost/rest/v1/transformers?id=eq.8&select=")))
+				.andExpect(method(HttpMethod.GET))
+				.andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+
+		assertNull(transformerCache.getById(8L));
+		assertNull(transformerCache.getById(8L));
+		server.verify();
+	}
+}